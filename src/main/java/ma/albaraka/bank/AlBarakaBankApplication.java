@@ -2,8 +2,10 @@ package ma.albaraka.bank;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class AlBarakaBankApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,15 @@
+package ma.albaraka.bank.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class AccountOwnership {
+
+    private final Long ownerId;
+    private final AccountStatus status;
+}
@@ -0,0 +1,55 @@
+package ma.albaraka.bank.cache;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.repository.AccountRepository;
+
+/**
+ * Caches the owner and status of accounts so ownership checks do not load the account entity.
+ * Entries are evicted when the account status changes; the owner of an account never changes.
+ */
+@Component
+public class AccountOwnershipCache {
+
+    private final AccountRepository accountRepository;
+    private final Cache<Long, AccountOwnership> cache;
+
+    public AccountOwnershipCache(
+            AccountRepository accountRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.accounts.max-size:10000}") long maxSize,
+            @Value("${app.cache.accounts.ttl-minutes:10}") long ttlMinutes) {
+        this.accountRepository = accountRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accountOwnership");
+    }
+
+    public AccountOwnership get(Long accountId) {
+        AccountOwnership ownership = cache.get(accountId, id -> accountRepository.findOwnershipById(id).orElse(null));
+        if (ownership == null) {
+            throw new ResourceNotFoundException("Account", "id", accountId);
+        }
+        return ownership;
+    }
+
+    public boolean isOwnedBy(Long accountId, Long userId) {
+        return get(accountId).getOwnerId().equals(userId);
+    }
+
+    public void evict(Long accountId) {
+        AfterCommit.run(() -> cache.invalidate(accountId));
+    }
+}
@@ -0,0 +1,56 @@
+package ma.albaraka.bank.cache;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Caches loaded {@link UserDetails} by email. Callers always receive a copy because the
+ * authentication manager erases the credentials of the instance it is given.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.users.max-size:10000}") long maxSize,
+            @Value("${app.cache.users.ttl-minutes:10}") long ttlMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        return copy(cache.get(email, loader));
+    }
+
+    public void evict(String email) {
+        AfterCommit.run(() -> cache.invalidate(email));
+    }
+
+    private UserDetails copy(UserDetails details) {
+        return new User(
+                details.getUsername(),
+                details.getPassword(),
+                details.isEnabled(),
+                details.isAccountNonExpired(),
+                details.isCredentialsNonExpired(),
+                details.isAccountNonLocked(),
+                details.getAuthorities());
+    }
+}
@@ -13,16 +13,26 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.domain.enums.ExportFormat;
 import ma.albaraka.bank.dto.request.CreateUserRequest;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
 import ma.albaraka.bank.dto.request.UpdateUserRequest;
 import ma.albaraka.bank.dto.request.UpdateUserRoleRequest;
 import ma.albaraka.bank.dto.response.AccountResponse;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
 import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.dto.response.OrphanReconciliationResponse;
+import ma.albaraka.bank.dto.response.StorageMigrationResponse;
 import ma.albaraka.bank.dto.response.UserResponse;
 import ma.albaraka.bank.service.AccountService;
+import ma.albaraka.bank.service.DocumentReconciliationService;
+import ma.albaraka.bank.service.DocumentStorageMigrationService;
+import ma.albaraka.bank.service.OperationExportService;
 import ma.albaraka.bank.service.OperationService;
 import ma.albaraka.bank.service.UserService;
 
@@ -34,6 +44,10 @@ public class AdminController {
     private final UserService userService;
     private final AccountService accountService;
     private final OperationService operationService;
+    private final OperationExportService operationExportService;
+    private final ExportResponses exportResponses;
+    private final DocumentStorageMigrationService documentStorageMigrationService;
+    private final DocumentReconciliationService documentReconciliationService;
 
     // User Management
     @PostMapping("/users")
@@ -110,6 +124,18 @@ public class AdminController {
         return ResponseEntity.ok(account);
     }
 
+    @GetMapping("/accounts/{id}/statement")
+    public WebAsyncTask<Void> exportAccountStatement(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) {
+
+        accountService.getAccountById(id);
+        ExportFormat exportFormat = operationExportService.resolveFormat(format);
+        return exportResponses.stream(response, exportFormat, "statement-" + id,
+                out -> operationExportService.exportAccountStatement(id, exportFormat, out));
+    }
+
     @PutMapping("/accounts/{id}/freeze")
     public ResponseEntity<Void> freezeAccount(@PathVariable Long id) {
         accountService.freezeAccount(id);
@@ -135,6 +161,22 @@ public class AdminController {
         return ResponseEntity.ok(operations);
     }
 
+    @GetMapping("/operations/export")
+    public WebAsyncTask<Void> exportOperations(
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) {
+
+        ExportFormat exportFormat = operationExportService.resolveFormat(format);
+        return exportResponses.stream(response, exportFormat, "operations",
+                out -> operationExportService.exportOperations(exportFormat, out));
+    }
+
+    @GetMapping("/operations/search")
+    public ResponseEntity<CursorPageResponse<OperationResponse>> searchOperations(OperationSearchCriteria criteria) {
+        CursorPageResponse<OperationResponse> page = operationService.searchOperations(criteria, null);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/operations/pending")
     public ResponseEntity<List<OperationResponse>> getPendingOperations() {
         List<OperationResponse> operations = operationService.getPendingOperations();
@@ -146,4 +188,23 @@ public class AdminController {
         OperationResponse operation = operationService.getOperationById(id);
         return ResponseEntity.ok(operation);
     }
+
+    // Document Storage
+    @PostMapping("/documents/storage/migrate")
+    public ResponseEntity<StorageMigrationResponse> migrateDocumentStorage() {
+        StorageMigrationResponse response = documentStorageMigrationService.start();
+        return ResponseEntity.accepted().body(response);
+    }
+
+    @GetMapping("/documents/storage/migrate")
+    public ResponseEntity<StorageMigrationResponse> getDocumentStorageMigration() {
+        StorageMigrationResponse response = documentStorageMigrationService.getStatus();
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/documents/storage/reconcile")
+    public ResponseEntity<OrphanReconciliationResponse> reconcileDocumentStorage() {
+        OrphanReconciliationResponse response = documentReconciliationService.reconcile();
+        return ResponseEntity.ok(response);
+    }
 }
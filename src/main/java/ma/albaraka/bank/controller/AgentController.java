@@ -1,11 +1,21 @@
 package ma.albaraka.bank.controller;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
+import ma.albaraka.bank.dto.response.DocumentResponse;
 import ma.albaraka.bank.dto.response.OperationResponse;
-import ma.albaraka.bank.security.JwtTokenProvider;
+import ma.albaraka.bank.dto.response.PendingOperationResponse;
+import ma.albaraka.bank.security.AuthenticatedUser;
+import ma.albaraka.bank.service.DocumentService;
 import ma.albaraka.bank.service.OperationService;
+import ma.albaraka.bank.service.PendingOperationService;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -16,7 +26,8 @@ public class AgentController {
 
 
     private final OperationService operationService;
-    private final JwtTokenProvider jwtTokenProvider;
+    private final DocumentService documentService;
+    private final PendingOperationService pendingOperationService;
 
     @GetMapping("/operations/pending")
     public ResponseEntity<List<OperationResponse>> getPendingOperations() {
@@ -24,18 +35,76 @@ public class AgentController {
         return ResponseEntity.ok(operations);
     }
 
+    @GetMapping("/operations/queue")
+    public ResponseEntity<List<PendingOperationResponse>> getQueue() {
+        return ResponseEntity.ok(pendingOperationService.getQueue());
+    }
+
+    @GetMapping(value = "/operations/queue/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQueue() {
+        return pendingOperationService.subscribe();
+    }
+
+    @PostMapping("/operations/claim")
+    public ResponseEntity<PendingOperationResponse> claimNextOperation(
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        PendingOperationResponse claimed = pendingOperationService.claimNext(principal.getUserId());
+        return claimed != null ? ResponseEntity.ok(claimed) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/operations/{id}/claim")
+    public ResponseEntity<PendingOperationResponse> claimOperation(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        PendingOperationResponse claimed = pendingOperationService.claim(id, principal.getUserId());
+        return ResponseEntity.ok(claimed);
+    }
+
+    @DeleteMapping("/operations/{id}/claim")
+    public ResponseEntity<Void> releaseOperation(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        pendingOperationService.release(id, principal.getUserId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/operations/search")
+    public ResponseEntity<CursorPageResponse<OperationResponse>> searchOperations(OperationSearchCriteria criteria) {
+        CursorPageResponse<OperationResponse> page = operationService.searchOperations(criteria, null);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/operations/{id}")
     public ResponseEntity<OperationResponse> getOperationById(@PathVariable Long id) {
         OperationResponse operation = operationService.getOperationById(id);
         return ResponseEntity.ok(operation);
     }
 
+    @GetMapping("/operations/{id}/documents")
+    public ResponseEntity<List<DocumentResponse>> getOperationDocuments(@PathVariable Long id) {
+        List<DocumentResponse> documents = documentService.getDocumentsByOperationId(id);
+        return ResponseEntity.ok(documents);
+    }
+
+    @GetMapping("/documents/{id}/content")
+    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id) {
+        return DocumentDownloads.of(documentService.getDocumentContent(id));
+    }
+
+    @GetMapping("/documents/{id}/thumbnail")
+    public ResponseEntity<Resource> downloadThumbnail(@PathVariable Long id) {
+        return DocumentDownloads.of(documentService.getDocumentThumbnail(id));
+    }
+
     @PutMapping("/operations/{id}/approve")
     public ResponseEntity<OperationResponse> approveOperation(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long agentId = extractUserIdFromToken(authHeader);
+        Long agentId = principal.getUserId();
         OperationResponse response = operationService.approveOperation(id, agentId);
         return ResponseEntity.ok(response);
     }
@@ -44,9 +113,9 @@ public class AgentController {
     public ResponseEntity<OperationResponse> rejectOperation(
             @PathVariable Long id,
             @RequestParam(required = false) String reason,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long agentId = extractUserIdFromToken(authHeader);
+        Long agentId = principal.getUserId();
         String rejectionReason = reason != null ? reason : "Rejected by agent";
         OperationResponse response = operationService.rejectOperation(id, agentId, rejectionReason);
         return ResponseEntity.ok(response);
@@ -57,9 +126,4 @@ public class AgentController {
         List<OperationResponse> operations = operationService.getAllOperations();
         return ResponseEntity.ok(operations);
     }
-
-    private Long extractUserIdFromToken(String authHeader) {
-        String token = authHeader.substring(7);
-        return jwtTokenProvider.extractUserId(token);
-    }
 }
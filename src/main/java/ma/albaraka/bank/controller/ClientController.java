@@ -1,9 +1,13 @@
 package ma.albaraka.bank.controller;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,17 +16,27 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.domain.enums.ExportFormat;
+import ma.albaraka.bank.dto.request.BatchOperationRequest;
 import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
 import ma.albaraka.bank.dto.response.AccountResponse;
+import ma.albaraka.bank.dto.response.BalanceResponse;
+import ma.albaraka.bank.dto.response.BatchOperationResponse;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
 import ma.albaraka.bank.dto.response.DocumentResponse;
 import ma.albaraka.bank.dto.response.OperationResponse;
-import ma.albaraka.bank.security.JwtTokenProvider;
+import ma.albaraka.bank.security.AuthenticatedUser;
 import ma.albaraka.bank.service.AccountService;
 import ma.albaraka.bank.service.DocumentService;
+import ma.albaraka.bank.service.IdempotencyService;
+import ma.albaraka.bank.service.OperationExportService;
 import ma.albaraka.bank.service.OperationService;
 
 @RestController
@@ -33,33 +47,61 @@ public class ClientController {
     private final OperationService operationService;
     private final AccountService accountService;
     private final DocumentService documentService;
-    private final JwtTokenProvider jwtTokenProvider;
+    private final IdempotencyService idempotencyService;
+    private final OperationExportService operationExportService;
+    private final ExportResponses exportResponses;
 
     @PostMapping("/operations")
     public ResponseEntity<OperationResponse> createOperation(
             @Valid @RequestBody CreateOperationRequest request,
-            @RequestHeader("Authorization") String authHeader) {
-
-        Long userId = extractUserIdFromToken(authHeader);
-        OperationResponse response = operationService.createOperation(request, userId);
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        Long userId = principal.getUserId();
+        OperationResponse response = idempotencyKey == null
+                ? operationService.createOperation(request, userId)
+                : idempotencyService.execute(userId, idempotencyKey,
+                        recorder -> operationService.createOperation(request, userId, recorder));
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping("/operations/batch")
+    public ResponseEntity<BatchOperationResponse> createOperations(
+            @Valid @RequestBody BatchOperationRequest request,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        Long userId = principal.getUserId();
+        boolean atomic = request.getAtomic() == null || request.getAtomic();
+        BatchOperationResponse response = operationService.createOperations(request.getOperations(), userId, atomic);
+        HttpStatus status = response.getCreated() > 0 ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+
     @GetMapping("/operations")
     public ResponseEntity<List<OperationResponse>> getMyOperations(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long userId = extractUserIdFromToken(authHeader);
+        Long userId = principal.getUserId();
         List<OperationResponse> operations = operationService.getOperationsByUserId(userId);
         return ResponseEntity.ok(operations);
     }
 
+    @GetMapping("/operations/search")
+    public ResponseEntity<CursorPageResponse<OperationResponse>> searchMyOperations(
+            OperationSearchCriteria criteria,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        Long userId = principal.getUserId();
+        CursorPageResponse<OperationResponse> page = operationService.searchOperations(criteria, userId);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/operations/{id}")
     public ResponseEntity<OperationResponse> getOperationById(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long userId = extractUserIdFromToken(authHeader);
+        Long userId = principal.getUserId();
         OperationResponse operation = operationService.getOperationById(id, userId);
 
         return ResponseEntity.ok(operation);
@@ -80,11 +122,20 @@ public class ClientController {
         return ResponseEntity.ok(documents);
     }
 
+    @GetMapping("/documents/{id}/content")
+    public ResponseEntity<Resource> downloadDocument(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        Long userId = principal.getUserId();
+        return DocumentDownloads.of(documentService.getDocumentContent(id, userId));
+    }
+
     @GetMapping("/accounts")
     public ResponseEntity<List<AccountResponse>> getMyAccounts(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long userId = extractUserIdFromToken(authHeader);
+        Long userId = principal.getUserId();
         List<AccountResponse> accounts = accountService.getAccountsByUserId(userId);
         return ResponseEntity.ok(accounts);
     }
@@ -92,15 +143,35 @@ public class ClientController {
     @GetMapping("/accounts/{id}")
     public ResponseEntity<AccountResponse> getAccountById(
             @PathVariable Long id,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
-        Long userId = extractUserIdFromToken(authHeader);
+        Long userId = principal.getUserId();
         AccountResponse account = accountService.getAccountById(id, userId);
         return ResponseEntity.ok(account);
     }
 
-    private Long extractUserIdFromToken(String authHeader) {
-        String token = authHeader.substring(7);
-        return jwtTokenProvider.extractUserId(token);
+    @GetMapping("/accounts/{id}/balance")
+    public ResponseEntity<BalanceResponse> getBalanceAsOf(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+
+        Long userId = principal.getUserId();
+        BalanceResponse balance = accountService.getBalanceAsOf(id, userId, asOf);
+        return ResponseEntity.ok(balance);
+    }
+
+    @GetMapping("/accounts/{id}/statement")
+    public WebAsyncTask<Void> exportAccountStatement(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "csv") String format,
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            HttpServletResponse response) {
+
+        Long userId = principal.getUserId();
+        accountService.checkOwnership(id, userId);
+        ExportFormat exportFormat = operationExportService.resolveFormat(format);
+        return exportResponses.stream(response, exportFormat, "statement-" + id,
+                out -> operationExportService.exportAccountStatement(id, exportFormat, out));
     }
 }
@@ -0,0 +1,35 @@
+package ma.albaraka.bank.controller;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import ma.albaraka.bank.dto.response.DocumentContent;
+
+/**
+ * Builds document download responses. The body is returned as a {@link Resource} so Spring MVC
+ * streams it from disk, answers {@code Range} requests with 206 partial content, and turns a
+ * matching {@code If-None-Match} into a 304 from the strong ETag.
+ */
+final class DocumentDownloads {
+
+    private DocumentDownloads() {
+    }
+
+    static ResponseEntity<Resource> of(DocumentContent content) {
+        ContentDisposition disposition = ContentDisposition.inline()
+                .filename(content.getFileName(), StandardCharsets.UTF_8)
+                .build();
+        return ResponseEntity.ok()
+                .eTag(content.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.parseMediaType(content.getFileType().getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(content.getResource());
+    }
+}
@@ -0,0 +1,39 @@
+package ma.albaraka.bank.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletResponse;
+import ma.albaraka.bank.domain.enums.ExportFormat;
+
+/**
+ * Streams exports on an async request carrying its own timeout, so long exports do not force a
+ * long global async timeout onto every other async endpoint.
+ */
+@Component
+class ExportResponses {
+
+    private final long timeoutMs;
+
+    ExportResponses(@Value("${app.export.timeout-ms:1800000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    WebAsyncTask<Void> stream(HttpServletResponse response, ExportFormat format, String fileName,
+            StreamingResponseBody body) {
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(fileName + "." + format.getExtension())
+                .build();
+        response.setContentType(format.getMediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        return new WebAsyncTask<>(timeoutMs, () -> {
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+}
@@ -14,10 +14,12 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import ma.albaraka.bank.domain.enums.DocumentProcessingStatus;
 import ma.albaraka.bank.domain.enums.DocumentType;
 
 @Entity
@@ -29,7 +31,9 @@ import ma.albaraka.bank.domain.enums.DocumentType;
 public class Document {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "documents_id")
+    @TableGenerator(name = "documents_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "documents", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -49,11 +53,29 @@ public class Document {
     @Column(nullable = false)
     private Long fileSize;
 
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(length = 64)
+    private String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private DocumentProcessingStatus processingStatus;
+
+    private Integer pageCount;
+
+    @Column(length = 500)
+    private String thumbnailPath;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime uploadedAt;
 
     @PrePersist
     protected void onCreate() {
         uploadedAt = LocalDateTime.now();
+        if (processingStatus == null) {
+            processingStatus = DocumentProcessingStatus.PENDING;
+        }
     }
 }
@@ -0,0 +1,26 @@
+package ma.albaraka.bank.domain.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "number_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NumberSequence {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(nullable = false)
+    private Long nextValue;
+}
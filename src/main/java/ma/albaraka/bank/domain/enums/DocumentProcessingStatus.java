@@ -0,0 +1,7 @@
+package ma.albaraka.bank.domain.enums;
+
+public enum DocumentProcessingStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
@@ -1,7 +1,17 @@
 package ma.albaraka.bank.domain.enums;
 
 public enum DocumentType {
-    PDF,
-    JPG,
-    PNG
+    PDF("application/pdf"),
+    JPG("image/jpeg"),
+    PNG("image/png");
+
+    private final String mediaType;
+
+    DocumentType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
 }
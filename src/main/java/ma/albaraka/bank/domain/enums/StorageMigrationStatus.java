@@ -0,0 +1,8 @@
+package ma.albaraka.bank.domain.enums;
+
+public enum StorageMigrationStatus {
+    IDLE,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
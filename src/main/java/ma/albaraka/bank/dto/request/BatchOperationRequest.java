@@ -0,0 +1,25 @@
+package ma.albaraka.bank.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchOperationRequest {
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 100, message = "A batch cannot contain more than 100 operations")
+    private List<@Valid CreateOperationRequest> operations;
+
+    // true: every operation is applied or none is; false: valid operations are applied, invalid ones reported
+    private Boolean atomic;
+}
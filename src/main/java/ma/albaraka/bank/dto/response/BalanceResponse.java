@@ -0,0 +1,19 @@
+package ma.albaraka.bank.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceResponse {
+
+    private Long accountId;
+    private String balance;
+    private LocalDateTime asOf;
+}
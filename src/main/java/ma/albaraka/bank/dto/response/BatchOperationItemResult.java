@@ -0,0 +1,20 @@
+package ma.albaraka.bank.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOperationItemResult {
+
+    private int index;
+    private String status;
+    private OperationResponse operation;
+    private String error;
+}
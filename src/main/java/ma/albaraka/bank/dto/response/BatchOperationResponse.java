@@ -0,0 +1,19 @@
+package ma.albaraka.bank.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchOperationResponse {
+
+    private int created;
+    private int failed;
+    private List<BatchOperationItemResult> results;
+}
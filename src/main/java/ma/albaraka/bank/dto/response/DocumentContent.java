@@ -0,0 +1,24 @@
+package ma.albaraka.bank.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ma.albaraka.bank.domain.enums.DocumentType;
+import org.springframework.core.io.Resource;
+
+/**
+ * Stored bytes of a document together with what the download endpoints need to describe them.
+ * The resource is opened lazily by the response writer, never read into memory here.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentContent {
+
+    private Resource resource;
+    private String fileName;
+    private DocumentType fileType;
+    private String etag;
+}
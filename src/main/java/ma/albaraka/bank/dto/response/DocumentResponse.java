@@ -18,5 +18,9 @@ public class DocumentResponse {
     private String fileName;
     private String fileType;
     private Long fileSize;
+    private String sha256;
+    private String processingStatus;
+    private Integer pageCount;
+    private Boolean thumbnailAvailable;
     private LocalDateTime uploadedAt;
 }
@@ -0,0 +1,21 @@
+package ma.albaraka.bank.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrphanReconciliationResponse {
+
+    private long scannedFiles;
+    private long orphanFilesDeleted;
+    private long reclaimedBytes;
+    private long unreferencedBlobsDeleted;
+    private long scannedDocuments;
+    private long documentsMissingContent;
+    private long durationMs;
+}
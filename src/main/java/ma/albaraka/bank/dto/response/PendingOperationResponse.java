@@ -0,0 +1,19 @@
+package ma.albaraka.bank.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingOperationResponse {
+
+    private OperationResponse operation;
+    private Long claimedById;
+    private LocalDateTime claimedUntil;
+}
@@ -0,0 +1,27 @@
+package ma.albaraka.bank.dto.response;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ma.albaraka.bank.domain.enums.StorageMigrationStatus;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageMigrationResponse {
+
+    private StorageMigrationStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long scanned;
+    private long moved;
+    private long alreadyInPlace;
+    private long missing;
+    private long failed;
+    private long durationMs;
+    private String error;
+}
@@ -0,0 +1,8 @@
+package ma.albaraka.bank.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
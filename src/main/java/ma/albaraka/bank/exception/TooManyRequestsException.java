@@ -0,0 +1,8 @@
+package ma.albaraka.bank.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package ma.albaraka.bank.ledger;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+
+    Optional<BalanceCheckpoint> findFirstByAccountIdAndAsOfLessThanEqualOrderByAsOfDesc(Long accountId, LocalDateTime asOf);
+
+    @Query("SELECT MAX(c.asOf) FROM BalanceCheckpoint c")
+    Optional<LocalDateTime> findLatestAsOf();
+}
@@ -0,0 +1,6 @@
+package ma.albaraka.bank.ledger;
+
+public enum EntryDirection {
+    DEBIT,
+    CREDIT
+}
@@ -0,0 +1,34 @@
+package ma.albaraka.bank.ledger;
+
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically snapshots the balance of every account touched since the previous run.
+ * The cutoff lags behind the clock so that postings still in flight are not skipped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LedgerCheckpointJob {
+
+    private final LedgerService ledgerService;
+
+    @Value("${app.ledger.checkpoint-lag-seconds:60}")
+    private long lagSeconds;
+
+    @Scheduled(fixedDelayString = "${app.ledger.checkpoint-interval-ms:300000}",
+            initialDelayString = "${app.ledger.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        int written = ledgerService.checkpointAccounts(LocalDateTime.now().minusSeconds(lagSeconds));
+        if (written > 0) {
+            log.info("Wrote {} balance checkpoints", written);
+        }
+    }
+}
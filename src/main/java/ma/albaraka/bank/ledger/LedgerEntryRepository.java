@@ -0,0 +1,24 @@
+package ma.albaraka.bank.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.direction = ma.albaraka.bank.ledger.EntryDirection.CREDIT "
+            + "THEN e.amount ELSE -e.amount END), 0) FROM LedgerEntry e "
+            + "WHERE e.account.id = :accountId AND e.postedAt > :from AND e.postedAt <= :to")
+    BigDecimal sumNetBetween(@Param("accountId") Long accountId,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT DISTINCT e.account.id FROM LedgerEntry e "
+            + "WHERE e.account IS NOT NULL AND e.postedAt > :from AND e.postedAt <= :to")
+    List<Long> findAccountIdsPostedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
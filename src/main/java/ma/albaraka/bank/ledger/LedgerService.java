@@ -0,0 +1,16 @@
+package ma.albaraka.bank.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import ma.albaraka.bank.domain.entity.Operation;
+
+public interface LedgerService {
+
+    void recordPostings(Collection<Operation> operations);
+
+    BigDecimal getBalanceAsOf(Long accountId, LocalDateTime asOf);
+
+    int checkpointAccounts(LocalDateTime cutoff);
+}
@@ -0,0 +1,92 @@
+package ma.albaraka.bank.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class LedgerServiceImpl implements LedgerService {
+
+    /** The as-of of the opening checkpoints written by changeset 013, inside the TIMESTAMP range. */
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 2, 0, 0);
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+
+    @Override
+    public void recordPostings(Collection<Operation> operations) {
+        List<LedgerEntry> entries = new ArrayList<>(operations.size() * 2);
+        for (Operation operation : operations) {
+            switch (operation.getType()) {
+                case DEPOSIT:
+                    entries.add(entry(operation, null, EntryDirection.DEBIT));
+                    entries.add(entry(operation, operation.getDestinationAccount(), EntryDirection.CREDIT));
+                    break;
+
+                case WITHDRAWAL:
+                    entries.add(entry(operation, operation.getSourceAccount(), EntryDirection.DEBIT));
+                    entries.add(entry(operation, null, EntryDirection.CREDIT));
+                    break;
+
+                case TRANSFER:
+                    entries.add(entry(operation, operation.getSourceAccount(), EntryDirection.DEBIT));
+                    entries.add(entry(operation, operation.getDestinationAccount(), EntryDirection.CREDIT));
+                    break;
+            }
+        }
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getBalanceAsOf(Long accountId, LocalDateTime asOf) {
+        LocalDateTime to = asOf.truncatedTo(ChronoUnit.MICROS);
+        return balanceCheckpointRepository.findFirstByAccountIdAndAsOfLessThanEqualOrderByAsOfDesc(accountId, to)
+                .map(checkpoint -> checkpoint.getBalance()
+                        .add(ledgerEntryRepository.sumNetBetween(accountId, checkpoint.getAsOf(), to)))
+                .orElseGet(() -> ledgerEntryRepository.sumNetBetween(accountId, BEGINNING, to));
+    }
+
+    @Override
+    public int checkpointAccounts(LocalDateTime cutoff) {
+        LocalDateTime to = cutoff.truncatedTo(ChronoUnit.MICROS);
+        // The previous cutoff is stored with the checkpoints themselves, so a restart resumes where the last run stopped.
+        LocalDateTime from = balanceCheckpointRepository.findLatestAsOf().orElse(BEGINNING);
+        if (!to.isAfter(from)) {
+            return 0;
+        }
+
+        List<Long> accountIds = ledgerEntryRepository.findAccountIdsPostedBetween(from, to);
+        List<BalanceCheckpoint> checkpoints = new ArrayList<>(accountIds.size());
+        for (Long accountId : accountIds) {
+            checkpoints.add(BalanceCheckpoint.builder()
+                    .accountId(accountId)
+                    .balance(getBalanceAsOf(accountId, to))
+                    .asOf(to)
+                    .build());
+        }
+        balanceCheckpointRepository.saveAll(checkpoints);
+        return checkpoints.size();
+    }
+
+    private LedgerEntry entry(Operation operation, Account account, EntryDirection direction) {
+        return LedgerEntry.builder()
+                .operation(operation)
+                .account(account)
+                .direction(direction)
+                .amount(operation.getAmount())
+                .build();
+    }
+}
@@ -10,5 +10,6 @@ public interface DocumentMapper {
 
     @Mapping(target = "operationId", source = "operation.id")
     @Mapping(target = "fileType", expression = "java(document.getFileType().name())")
+    @Mapping(target = "thumbnailAvailable", expression = "java(document.getThumbnailPath() != null)")
     DocumentResponse toResponse(Document document);
 }
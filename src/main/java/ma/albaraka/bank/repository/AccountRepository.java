@@ -1,21 +1,64 @@
 package ma.albaraka.bank.repository;
 
+import ma.albaraka.bank.cache.AccountOwnership;
 import ma.albaraka.bank.domain.entity.Account;
 import ma.albaraka.bank.domain.enums.AccountStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
 
+    @Override
+    @EntityGraph(attributePaths = "owner")
+    List<Account> findAll();
+
+    @EntityGraph(attributePaths = "owner")
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    @EntityGraph(attributePaths = "owner")
     List<Account> findByOwnerId(Long ownerId);
 
     List<Account> findByOwnerIdAndStatus(Long ownerId, AccountStatus status);
 
-    Boolean existsByAccountNumber(String accountNumber);
+    @Query("SELECT new ma.albaraka.bank.cache.AccountOwnership(a.owner.id, a.status) FROM Account a WHERE a.id = :id")
+    Optional<AccountOwnership> findOwnershipById(@Param("id") Long id);
+
+    /**
+     * Locks the rows in id order and returns their current balances, bypassing the persistence context.
+     */
+    @Transactional
+    @Query(value = "SELECT id AS id, balance AS balance FROM accounts WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    List<LockedBalance> lockBalances(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1, a.updatedAt = :now "
+            + "WHERE a.id = :id AND a.balance >= :amount")
+    int debit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1, a.updatedAt = :now "
+            + "WHERE a.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    interface LockedBalance {
+
+        Long getId();
+
+        BigDecimal getBalance();
+    }
 }
@@ -0,0 +1,58 @@
+package ma.albaraka.bank.repository;
+
+import jakarta.persistence.LockModeType;
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentBlobRepository extends JpaRepository<DocumentBlob, String> {
+
+    /**
+     * Locks the blob row until the transaction ends; reference count changes on it wait meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM DocumentBlob b WHERE b.contentHash = :hash")
+    Optional<DocumentBlob> findAndLockById(@Param("hash") String contentHash);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount + 1 WHERE b.contentHash = :hash")
+    int incrementRefCount(@Param("hash") String contentHash);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount - 1 WHERE b.contentHash = :hash AND b.refCount > 0")
+    int decrementRefCount(@Param("hash") String contentHash);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM DocumentBlob b WHERE b.contentHash = :hash AND b.refCount = 0")
+    int deleteIfUnreferenced(@Param("hash") String contentHash);
+
+    List<DocumentBlob> findByContentHashGreaterThanOrderByContentHashAsc(String afterHash, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.storagePath = :path WHERE b.contentHash = :hash")
+    int updateStoragePath(@Param("hash") String contentHash, @Param("path") String storagePath);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.storagePath = :path WHERE b.storagePath = :oldPath")
+    int updateStoragePathByPath(@Param("oldPath") String oldStoragePath, @Param("path") String storagePath);
+
+    @Query("SELECT b.storagePath FROM DocumentBlob b WHERE b.storagePath IN :paths")
+    List<String> findStoragePathsIn(@Param("paths") Collection<String> storagePaths);
+
+    @Query("SELECT b.contentHash FROM DocumentBlob b WHERE b.contentHash IN :hashes")
+    List<String> findContentHashesIn(@Param("hashes") Collection<String> contentHashes);
+
+    @Query("SELECT b FROM DocumentBlob b WHERE b.refCount = 0 AND b.createdAt < :before ORDER BY b.createdAt")
+    List<DocumentBlob> findUnreferencedCreatedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+}
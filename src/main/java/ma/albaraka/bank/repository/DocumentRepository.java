@@ -1,13 +1,60 @@
 package ma.albaraka.bank.repository;
 
 import ma.albaraka.bank.domain.entity.Document;
+import ma.albaraka.bank.domain.enums.DocumentProcessingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
     List<Document> findByOperationId(Long operationId);
+
+    List<Document> findByContentHashIsNullAndIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Document d SET d.storagePath = :path WHERE d.id = :id")
+    int updateStoragePath(@Param("id") Long id, @Param("path") String storagePath);
+
+    @Modifying
+    @Query("UPDATE Document d SET d.storagePath = :path WHERE d.contentHash = :hash")
+    int updateStoragePathByContentHash(@Param("hash") String contentHash, @Param("path") String storagePath);
+
+    @Modifying
+    @Query("UPDATE Document d SET d.storagePath = :path WHERE d.storagePath = :oldPath")
+    int updateStoragePathByPath(@Param("oldPath") String oldStoragePath, @Param("path") String storagePath);
+
+    @Modifying
+    @Query("UPDATE Document d SET d.thumbnailPath = :path WHERE d.thumbnailPath = :oldPath")
+    int updateThumbnailPathByPath(@Param("oldPath") String oldThumbnailPath, @Param("path") String thumbnailPath);
+
+    @Query("SELECT d.id FROM Document d WHERE d.processingStatus = :status AND d.uploadedAt < :before ORDER BY d.id")
+    List<Long> findIdsByProcessingStatusUploadedBefore(
+            @Param("status") DocumentProcessingStatus status,
+            @Param("before") LocalDateTime before,
+            Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Document d SET d.processingStatus = :status, d.pageCount = :pageCount, d.thumbnailPath = :thumbnailPath WHERE d.id = :id")
+    int recordProcessing(
+            @Param("id") Long id,
+            @Param("status") DocumentProcessingStatus status,
+            @Param("pageCount") Integer pageCount,
+            @Param("thumbnailPath") String thumbnailPath);
+
+    List<Document> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @Query("SELECT d.storagePath FROM Document d WHERE d.storagePath IN :paths")
+    List<String> findStoragePathsIn(@Param("paths") Collection<String> storagePaths);
+
+    @Query("SELECT d.thumbnailPath FROM Document d WHERE d.thumbnailPath IN :paths")
+    List<String> findThumbnailPathsIn(@Param("paths") Collection<String> thumbnailPaths);
 }
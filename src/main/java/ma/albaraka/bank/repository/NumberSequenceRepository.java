@@ -0,0 +1,16 @@
+package ma.albaraka.bank.repository;
+
+import ma.albaraka.bank.domain.entity.NumberSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NumberSequenceRepository extends JpaRepository<NumberSequence, String> {
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE NumberSequence s SET s.nextValue = s.nextValue + :count WHERE s.name = :name")
+    int advance(@Param("name") String name, @Param("count") long count);
+}
@@ -1,18 +1,82 @@
 package ma.albaraka.bank.repository;
 
+import jakarta.persistence.QueryHint;
 import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
 import ma.albaraka.bank.domain.enums.OperationStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface OperationRepository extends JpaRepository<Operation, Long> {
+public interface OperationRepository extends JpaRepository<Operation, Long>, OperationSearchRepository {
 
+    @Override
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
+    List<Operation> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
+    Optional<Operation> findById(Long id);
+
+    /**
+     * Loads the operation without tracking changes, for callers that write it back with a
+     * conditional update instead of a flush.
+     */
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query("SELECT o FROM Operation o WHERE o.id = :id")
+    Optional<Operation> findReadOnlyById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
     List<Operation> findByStatus(OperationStatus status);
 
-    List<Operation> findByCreatedById(Long userId);
+    /**
+     * Moves a pending operation to APPROVED; returns 0 when it was no longer pending.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Operation o SET o.status = ma.albaraka.bank.domain.enums.OperationStatus.APPROVED, "
+            + "o.approvedBy = :agent, o.approvedAt = :now, o.executedAt = :now "
+            + "WHERE o.id = :id AND o.status = ma.albaraka.bank.domain.enums.OperationStatus.PENDING")
+    int approvePending(@Param("id") Long id, @Param("agent") User agent, @Param("now") LocalDateTime now);
+
+    /**
+     * Moves a pending operation to REJECTED; returns 0 when it was no longer pending.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Operation o SET o.status = ma.albaraka.bank.domain.enums.OperationStatus.REJECTED, "
+            + "o.approvedBy = :agent, o.approvedAt = :now, o.note = :reason "
+            + "WHERE o.id = :id AND o.status = ma.albaraka.bank.domain.enums.OperationStatus.PENDING")
+    int rejectPending(@Param("id") Long id, @Param("agent") User agent, @Param("now") LocalDateTime now,
+                      @Param("reason") String reason);
+
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT o FROM Operation o ORDER BY o.id")
+    Stream<Operation> streamAll();
+
+    @EntityGraph(attributePaths = {"sourceAccount", "destinationAccount", "createdBy", "approvedBy"})
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT o FROM Operation o WHERE o.status = :status "
+            + "AND (o.sourceAccount.id = :accountId OR o.destinationAccount.id = :accountId) "
+            + "ORDER BY o.executedAt, o.id")
+    Stream<Operation> streamByAccountIdAndStatus(@Param("accountId") Long accountId,
+                                                 @Param("status") OperationStatus status);
 
     List<Operation> findBySourceAccountId(Long accountId);
 
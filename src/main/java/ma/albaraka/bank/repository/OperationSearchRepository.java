@@ -0,0 +1,28 @@
+package ma.albaraka.bank.repository;
+
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OperationSearchRepository {
+
+    /**
+     * Keyset page ordered by (createdAt, id) descending; pass the last row of the previous page
+     * as the cursor, or nulls for the first page. Null filters are left out of the query.
+     */
+    List<Operation> search(Long createdById,
+                           OperationStatus status,
+                           OperationType type,
+                           Long accountId,
+                           BigDecimal minAmount,
+                           BigDecimal maxAmount,
+                           LocalDateTime from,
+                           LocalDateTime to,
+                           LocalDateTime cursorCreatedAt,
+                           Long cursorId,
+                           int limit);
+}
@@ -0,0 +1,132 @@
+package ma.albaraka.bank.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the search from the filters that are present only, so each query is a plain conjunction
+ * the planner can serve from the (column, created_at, id) indexes. The cursor is spelled as
+ * {@code created_at < c OR (created_at = c AND id < i)}, which MySQL turns into a range on those
+ * indexes; it does not do that for the row-value form.
+ * <p>
+ * An account matches on either side of the operation, and a disjunction of the two columns cannot
+ * be read from either index in order. The account filter therefore runs one query per side, each
+ * walking its own (account, created_at, id) index, and merges the two pages.
+ */
+public class OperationSearchRepositoryImpl implements OperationSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Operation> search(Long createdById,
+                                  OperationStatus status,
+                                  OperationType type,
+                                  Long accountId,
+                                  BigDecimal minAmount,
+                                  BigDecimal maxAmount,
+                                  LocalDateTime from,
+                                  LocalDateTime to,
+                                  LocalDateTime cursorCreatedAt,
+                                  Long cursorId,
+                                  int limit) {
+        StringBuilder where = new StringBuilder();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+
+        if (createdById != null) {
+            and(where, "o.createdBy.id = :createdById");
+            parameters.put("createdById", createdById);
+        }
+        if (status != null) {
+            and(where, "o.status = :status");
+            parameters.put("status", status);
+        }
+        if (type != null) {
+            and(where, "o.type = :type");
+            parameters.put("type", type);
+        }
+        if (minAmount != null) {
+            and(where, "o.amount >= :minAmount");
+            parameters.put("minAmount", minAmount);
+        }
+        if (maxAmount != null) {
+            and(where, "o.amount <= :maxAmount");
+            parameters.put("maxAmount", maxAmount);
+        }
+        if (from != null) {
+            and(where, "o.createdAt >= :from");
+            parameters.put("from", from);
+        }
+        if (to != null) {
+            and(where, "o.createdAt < :to");
+            parameters.put("to", to);
+        }
+        if (cursorCreatedAt != null && cursorId != null) {
+            and(where, "(o.createdAt < :cursorCreatedAt OR (o.createdAt = :cursorCreatedAt AND o.id < :cursorId))");
+            parameters.put("cursorCreatedAt", cursorCreatedAt);
+            parameters.put("cursorId", cursorId);
+        }
+
+        if (accountId == null) {
+            return query(where, parameters, limit);
+        }
+
+        parameters.put("accountId", accountId);
+        StringBuilder outgoing = new StringBuilder(where);
+        and(outgoing, "o.sourceAccount.id = :accountId");
+        StringBuilder incoming = new StringBuilder(where);
+        and(incoming, "o.destinationAccount.id = :accountId");
+        return merge(query(outgoing, parameters, limit), query(incoming, parameters, limit), limit);
+    }
+
+    private List<Operation> query(StringBuilder where, Map<String, Object> parameters, int limit) {
+        TypedQuery<Operation> query = entityManager.createQuery("SELECT o FROM Operation o "
+                + "LEFT JOIN FETCH o.sourceAccount LEFT JOIN FETCH o.destinationAccount "
+                + "JOIN FETCH o.createdBy LEFT JOIN FETCH o.approvedBy"
+                + where
+                + " ORDER BY o.createdAt DESC, o.id DESC", Operation.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Merges two pages sorted newest first into one of at most {@code limit} rows. A transfer
+     * between two sides of the same account appears in both and is kept once.
+     */
+    private List<Operation> merge(List<Operation> first, List<Operation> second, int limit) {
+        List<Operation> all = new ArrayList<>(first.size() + second.size());
+        all.addAll(first);
+        all.addAll(second);
+        all.sort(Comparator.comparing(Operation::getCreatedAt).thenComparing(Operation::getId).reversed());
+
+        List<Operation> merged = new ArrayList<>(Math.min(all.size(), limit));
+        Set<Long> seen = new HashSet<>();
+        for (Operation operation : all) {
+            if (merged.size() == limit) {
+                break;
+            }
+            if (seen.add(operation.getId())) {
+                merged.add(operation);
+            }
+        }
+        return merged;
+    }
+
+    private void and(StringBuilder where, String predicate) {
+        where.append(where.length() == 0 ? " WHERE " : " AND ").append(predicate);
+    }
+}
@@ -0,0 +1,30 @@
+package ma.albaraka.bank.security;
+
+import java.security.Principal;
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Principal built from the JWT claims. Controllers receive it through
+ * {@code @AuthenticationPrincipal} instead of parsing the Authorization header again.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AuthenticatedUser implements Principal {
+
+    private final Long userId;
+    private final String email;
+    private final String role;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,6 +1,7 @@
 package ma.albaraka.bank.security;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.cache.UserDetailsCache;
 import ma.albaraka.bank.domain.entity.User;
 import ma.albaraka.bank.repository.UserRepository;
 import org.springframework.security.core.GrantedAuthority;
@@ -18,9 +19,14 @@ import java.util.Collections;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        return userDetailsCache.get(email, this::loadFromDatabase);
+    }
+
+    private UserDetails loadFromDatabase(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
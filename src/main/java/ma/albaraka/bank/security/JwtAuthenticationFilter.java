@@ -1,11 +1,14 @@
 package ma.albaraka.bank.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -13,13 +16,27 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final UserAccessCache userAccessCache;
+    private final boolean statelessAuth;
+
+    public JwtAuthenticationFilter(
+            JwtTokenProvider jwtTokenProvider,
+            CustomUserDetailsService userDetailsService,
+            UserAccessCache userAccessCache,
+            @Value("${app.security.stateless-auth:true}") boolean statelessAuth) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userDetailsService = userDetailsService;
+        this.userAccessCache = userAccessCache;
+        this.statelessAuth = statelessAuth;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -31,14 +48,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = authHeader.substring(7);
 
             try {
-                String email = jwtTokenProvider.extractEmail(token);
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                    Claims claims = jwtTokenProvider.parseClaims(token);
+                    Long userId = claims.get("userId", Long.class);
+                    String role = claims.get("role", String.class);
 
-                if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+                    Collection<? extends GrantedAuthority> authorities = null;
+                    if (!statelessAuth) {
+                        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                        authorities = userDetails.getAuthorities();
+                    } else if (userAccessCache.isAllowed(userId, role)) {
+                        authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role));
+                    }
 
-                    if (jwtTokenProvider.validateToken(token, email)) {
+                    if (authorities != null) {
+                        AuthenticatedUser principal = new AuthenticatedUser(userId, claims.getSubject(), role, authorities);
                         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
+                                principal, null, principal.getAuthorities());
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(authentication);
                     }
@@ -0,0 +1,94 @@
+package ma.albaraka.bank.security;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts failed logins per email and per client IP over a sliding window and blocks keys that go
+ * over their threshold before any password verification is attempted. Counts are exact per key;
+ * memory is bounded by capping the number of tracked keys, and a key idle for a whole window has
+ * nothing left to count and expires.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    private static final int WINDOW_SLOTS = 6;
+
+    private final Cache<String, SlidingWindowCounter> emailFailures;
+    private final Cache<String, SlidingWindowCounter> ipFailures;
+    private final long windowMillis;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerIp;
+    private final Counter throttled;
+
+    public LoginAttemptThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${app.security.login-throttle.window-minutes:15}") long windowMinutes,
+            @Value("${app.security.login-throttle.max-failures-per-email:10}") int maxFailuresPerEmail,
+            @Value("${app.security.login-throttle.max-failures-per-ip:50}") int maxFailuresPerIp,
+            @Value("${app.security.login-throttle.max-tracked-keys:100000}") long maxTrackedKeys) {
+        this.windowMillis = Duration.ofMinutes(windowMinutes).toMillis();
+        this.emailFailures = newCounterCache(maxTrackedKeys);
+        this.ipFailures = newCounterCache(maxTrackedKeys);
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.throttled = Counter.builder("auth.login.throttled")
+                .description("Login attempts rejected before password verification")
+                .register(meterRegistry);
+    }
+
+    public boolean isBlocked(String email, String clientIp) {
+        long now = System.currentTimeMillis();
+        boolean blocked = count(emailFailures, normalize(email), now) >= maxFailuresPerEmail
+                || (clientIp != null && count(ipFailures, clientIp, now) >= maxFailuresPerIp);
+        if (blocked) {
+            throttled.increment();
+        }
+        return blocked;
+    }
+
+    public void recordFailure(String email, String clientIp) {
+        long now = System.currentTimeMillis();
+        counter(emailFailures, normalize(email)).increment(now);
+        if (clientIp != null) {
+            counter(ipFailures, clientIp).increment(now);
+        }
+    }
+
+    /**
+     * Clears the failures of the email after a successful login. The client IP keeps its count, so
+     * one valid account cannot be used to reset an address that is spraying other accounts.
+     */
+    public void recordSuccess(String email) {
+        emailFailures.invalidate(normalize(email));
+    }
+
+    private Cache<String, SlidingWindowCounter> newCounterCache(long maxTrackedKeys) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(Duration.ofMillis(windowMillis))
+                .build();
+    }
+
+    private SlidingWindowCounter counter(Cache<String, SlidingWindowCounter> counters, String key) {
+        return counters.get(key, ignored -> new SlidingWindowCounter(WINDOW_SLOTS, windowMillis));
+    }
+
+    private int count(Cache<String, SlidingWindowCounter> counters, String key, long now) {
+        SlidingWindowCounter counter = counters.getIfPresent(key);
+        return counter == null ? 0 : counter.count(now);
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
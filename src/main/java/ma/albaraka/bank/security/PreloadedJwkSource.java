@@ -0,0 +1,124 @@
+package ma.albaraka.bank.security;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JWK set for the OAuth2 filter chain that is fetched at startup and refreshed in the background,
+ * so token verification never waits on the identity provider. A failed refresh keeps the last good
+ * set. Keys can also be seeded from a local file, which is used until the first successful fetch.
+ * An unknown key id triggers an early refresh, rate limited to allow for key rotation.
+ */
+@Slf4j
+@Component
+public class PreloadedJwkSource implements JWKSource<SecurityContext> {
+
+    private final String jwkSetUri;
+    private final String jwkSetFile;
+    private final Duration timeout;
+    private final long minRefreshIntervalMs;
+    private final HttpClient httpClient;
+
+    private volatile JWKSet jwkSet = new JWKSet();
+    private volatile long lastRefreshAttempt;
+
+    public PreloadedJwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${app.security.jwk.file:}") String jwkSetFile,
+            @Value("${app.security.jwk.timeout-ms:2000}") long timeoutMs,
+            @Value("${app.security.jwk.min-refresh-interval-ms:30000}") long minRefreshIntervalMs) {
+        this.jwkSetUri = jwkSetUri;
+        this.jwkSetFile = jwkSetFile;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.minRefreshIntervalMs = minRefreshIntervalMs;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @PostConstruct
+    public void preload() {
+        if (!jwkSetFile.isBlank()) {
+            try {
+                jwkSet = JWKSet.parse(Files.readString(Path.of(jwkSetFile)));
+                log.info("Loaded {} JWKs from {}", jwkSet.getKeys().size(), jwkSetFile);
+            } catch (IOException | ParseException e) {
+                log.warn("Could not load JWK set from {}: {}", jwkSetFile, e.getMessage());
+            }
+        }
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.jwk.refresh-interval-ms:300000}",
+            initialDelayString = "${app.security.jwk.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+        if (keys.isEmpty() && System.currentTimeMillis() - lastRefreshAttempt >= minRefreshIntervalMs) {
+            refreshOnce();
+            keys = jwkSelector.select(jwkSet);
+        }
+        return keys;
+    }
+
+    private synchronized void refreshOnce() {
+        // Another thread may have refreshed while this one waited for the lock.
+        if (System.currentTimeMillis() - lastRefreshAttempt >= minRefreshIntervalMs) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        lastRefreshAttempt = System.currentTimeMillis();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(jwkSetUri))
+                    .timeout(timeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.warn("JWK set refresh from {} returned HTTP {}, keeping {} cached keys",
+                        jwkSetUri, response.statusCode(), jwkSet.getKeys().size());
+                return;
+            }
+            JWKSet fetched = JWKSet.parse(response.body());
+            if (fetched.getKeys().isEmpty()) {
+                log.warn("JWK set from {} is empty, keeping {} cached keys", jwkSetUri, jwkSet.getKeys().size());
+                return;
+            }
+            jwkSet = fetched;
+            log.debug("Refreshed {} JWKs from {}", fetched.getKeys().size(), jwkSetUri);
+        } catch (IOException | ParseException | IllegalArgumentException e) {
+            log.warn("JWK set refresh from {} failed, keeping {} cached keys: {}",
+                    jwkSetUri, jwkSet.getKeys().size(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
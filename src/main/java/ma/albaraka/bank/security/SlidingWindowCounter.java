@@ -0,0 +1,62 @@
+package ma.albaraka.bank.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Exact failure count of one key over a sliding time window. The window is split into slots that
+ * are reset when the clock moves past them, so counts decay without any background task.
+ * <p>
+ * Each slot packs its epoch and its count into one long that is updated with a compare-and-set,
+ * so concurrent attempts against the same key never block each other. Epochs are counted from
+ * the creation of the counter to leave room for the count next to them.
+ */
+class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 22;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long slotMillis;
+    private final long baseEpoch;
+    private final AtomicLongArray slots;
+
+    SlidingWindowCounter(int slots, long windowMillis) {
+        this.slotMillis = Math.max(1, windowMillis / slots);
+        this.baseEpoch = System.currentTimeMillis() / slotMillis;
+        this.slots = new AtomicLongArray(slots);
+    }
+
+    void increment(long nowMillis) {
+        long epoch = epochOf(nowMillis);
+        int slot = (int) (epoch % slots.length());
+        while (true) {
+            long current = slots.get(slot);
+            long next;
+            if (current >>> COUNT_BITS >= epoch) {
+                // Same slot period, or a newer one stamped by a thread with a later clock reading.
+                next = (current & COUNT_MASK) == COUNT_MASK ? current : current + 1;
+            } else {
+                next = epoch << COUNT_BITS | 1;
+            }
+            if (next == current || slots.compareAndSet(slot, current, next)) {
+                return;
+            }
+        }
+    }
+
+    int count(long nowMillis) {
+        long epoch = epochOf(nowMillis);
+        int sum = 0;
+        for (int slot = 0; slot < slots.length(); slot++) {
+            long value = slots.get(slot);
+            if (epoch - (value >>> COUNT_BITS) < slots.length()) {
+                sum += (int) (value & COUNT_MASK);
+            }
+        }
+        return sum;
+    }
+
+    private long epochOf(long nowMillis) {
+        // Never zero, so a slot that was never written cannot pass for the current period.
+        return Math.max(1, nowMillis / slotMillis - baseEpoch + 1);
+    }
+}
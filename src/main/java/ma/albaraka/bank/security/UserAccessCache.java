@@ -0,0 +1,66 @@
+package ma.albaraka.bank.security;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ma.albaraka.bank.cache.AfterCommit;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * Remembers whether each user may still use the tokens issued to them and with which role, so
+ * stateless authentication does not need a users query per request. An entry is loaded on the
+ * first request of a user and evicted whenever the user is deactivated, deleted or changes role;
+ * the next request reloads it, so revoked tokens stop working right after the change commits.
+ */
+@Component
+public class UserAccessCache {
+
+    private static final String REVOKED = "";
+
+    private final UserRepository userRepository;
+    private final Cache<Long, String> roles;
+
+    public UserAccessCache(
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.cache.users.max-size:10000}") long maxSize,
+            @Value("${app.cache.users.ttl-minutes:10}") long ttlMinutes) {
+        this.userRepository = userRepository;
+        this.roles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, roles, "userAccess");
+    }
+
+    /**
+     * Returns true when the user exists, is active and still has the role carried by the token.
+     */
+    public boolean isAllowed(Long userId, String role) {
+        if (userId == null || role == null) {
+            return false;
+        }
+        // The load runs atomically for the key, so a concurrent evict waits for it and a stale row is never kept.
+        String current = roles.get(userId, id -> userRepository.findById(id)
+                .filter(User::getActive)
+                .map(user -> user.getRole().name())
+                .orElse(REVOKED));
+        return role.equals(current);
+    }
+
+    /**
+     * Forgets the cached state of a user once the surrounding transaction commits.
+     */
+    public void evict(Long userId) {
+        AfterCommit.run(() -> roles.invalidate(userId));
+    }
+}
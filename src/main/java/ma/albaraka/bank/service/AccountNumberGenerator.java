@@ -0,0 +1,6 @@
+package ma.albaraka.bank.service;
+
+public interface AccountNumberGenerator {
+
+    String nextAccountNumber();
+}
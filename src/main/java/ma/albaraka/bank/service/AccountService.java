@@ -1,8 +1,10 @@
 package ma.albaraka.bank.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import ma.albaraka.bank.dto.response.AccountResponse;
+import ma.albaraka.bank.dto.response.BalanceResponse;
 
 public interface AccountService {
 
@@ -12,6 +14,10 @@ public interface AccountService {
 
     AccountResponse getAccountById(Long id, Long userId);
 
+    void checkOwnership(Long id, Long userId);
+
+    BalanceResponse getBalanceAsOf(Long id, Long userId, LocalDateTime asOf);
+
     AccountResponse getAccountByNumber(String accountNumber);
 
     List<AccountResponse> getAccountsByUserId(Long userId);
@@ -1,12 +1,15 @@
 package ma.albaraka.bank.service;
 
 import ma.albaraka.bank.dto.request.LoginRequest;
+import ma.albaraka.bank.dto.request.RefreshTokenRequest;
 import ma.albaraka.bank.dto.request.RegisterRequest;
 import ma.albaraka.bank.dto.response.AuthResponse;
 
 public interface AuthService {
 
-    AuthResponse login(LoginRequest request);
+    AuthResponse login(LoginRequest request, String clientIp);
 
     AuthResponse register(RegisterRequest request);
+
+    AuthResponse refresh(RefreshTokenRequest request);
 }
@@ -0,0 +1,8 @@
+package ma.albaraka.bank.service;
+
+import ma.albaraka.bank.dto.response.OrphanReconciliationResponse;
+
+public interface DocumentReconciliationService {
+
+    OrphanReconciliationResponse reconcile();
+}
@@ -1,5 +1,6 @@
 package ma.albaraka.bank.service;
 
+import ma.albaraka.bank.dto.response.DocumentContent;
 import ma.albaraka.bank.dto.response.DocumentResponse;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,5 +14,11 @@ public interface DocumentService {
 
     List<DocumentResponse> getDocumentsByOperationId(Long operationId);
 
+    DocumentContent getDocumentContent(Long id);
+
+    DocumentContent getDocumentContent(Long id, Long userId);
+
+    DocumentContent getDocumentThumbnail(Long id);
+
     void deleteDocument(Long id);
 }
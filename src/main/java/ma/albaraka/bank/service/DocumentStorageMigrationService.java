@@ -0,0 +1,16 @@
+package ma.albaraka.bank.service;
+
+import ma.albaraka.bank.dto.response.StorageMigrationResponse;
+
+public interface DocumentStorageMigrationService {
+
+    /**
+     * Starts the migration in the background and returns its initial progress.
+     */
+    StorageMigrationResponse start();
+
+    /**
+     * Returns the progress of the running migration, or the outcome of the last one.
+     */
+    StorageMigrationResponse getStatus();
+}
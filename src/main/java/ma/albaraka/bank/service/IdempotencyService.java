@@ -0,0 +1,19 @@
+package ma.albaraka.bank.service;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.response.OperationResponse;
+
+public interface IdempotencyService {
+
+    /**
+     * Runs {@code action} once per key and replays its response when the key comes back. The action
+     * receives the recorder to hand to
+     * {@link OperationService#createOperation(CreateOperationRequest, Long, Consumer)}, which stores
+     * the key in the same transaction as the operation it created.
+     */
+    OperationResponse execute(Long userId, String idempotencyKey,
+            Function<Consumer<OperationResponse>, OperationResponse> action);
+}
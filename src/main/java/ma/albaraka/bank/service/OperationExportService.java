@@ -0,0 +1,15 @@
+package ma.albaraka.bank.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ma.albaraka.bank.domain.enums.ExportFormat;
+
+public interface OperationExportService {
+
+    ExportFormat resolveFormat(String format);
+
+    void exportOperations(ExportFormat format, OutputStream out) throws IOException;
+
+    void exportAccountStatement(Long accountId, ExportFormat format, OutputStream out) throws IOException;
+}
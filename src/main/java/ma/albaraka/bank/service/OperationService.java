@@ -1,18 +1,36 @@
 package ma.albaraka.bank.service;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.dto.response.BatchOperationResponse;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
 import ma.albaraka.bank.dto.response.OperationResponse;
 
 public interface OperationService {
 
     OperationResponse createOperation(CreateOperationRequest request, Long userId);
 
+    /**
+     * Creates the operation and hands its response to {@code recorder} inside the unit that writes
+     * it, so whatever the recorder stores commits or rolls back with the operation. The recorder
+     * may run on another thread, and again after an attempt that was rolled back.
+     */
+    OperationResponse createOperation(CreateOperationRequest request, Long userId, Consumer<OperationResponse> recorder);
+
+    BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId);
+
+    BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId, boolean atomic);
+
     OperationResponse getOperationById(Long id);
 
     OperationResponse getOperationById(Long id, Long userId);
 
+    /**
+     * Most recent operations of the user, newest first and capped; use {@link #searchOperations} to page further.
+     */
     List<OperationResponse> getOperationsByUserId(Long userId);
 
     List<OperationResponse> getPendingOperations();
@@ -21,5 +39,10 @@ public interface OperationService {
 
     OperationResponse rejectOperation(Long id, Long agentId, String reason);
 
+    /**
+     * Most recent operations, newest first and capped; use {@link #searchOperations} to page further.
+     */
     List<OperationResponse> getAllOperations();
+
+    CursorPageResponse<OperationResponse> searchOperations(OperationSearchCriteria criteria, Long createdById);
 }
@@ -0,0 +1,36 @@
+package ma.albaraka.bank.service;
+
+import java.util.List;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.dto.response.PendingOperationResponse;
+
+public interface PendingOperationService {
+
+    List<PendingOperationResponse> getQueue();
+
+    /**
+     * Claims the highest priority operation nobody else holds, or returns null when there is none.
+     */
+    PendingOperationResponse claimNext(Long agentId);
+
+    /**
+     * Claims the operation, loading it from the database when it is pending but not yet queued here.
+     */
+    PendingOperationResponse claim(Long operationId, Long agentId);
+
+    void release(Long operationId, Long agentId);
+
+    /**
+     * Fails when another agent holds an unexpired lease on the operation; no lease at all is fine.
+     */
+    void checkLease(Long operationId, Long agentId);
+
+    SseEmitter subscribe();
+
+    void enqueue(OperationResponse operation);
+
+    void remove(Long operationId);
+}
@@ -0,0 +1,22 @@
+package ma.albaraka.bank.service;
+
+import ma.albaraka.bank.domain.entity.RefreshToken;
+
+public interface RefreshTokenService {
+
+    /**
+     * Issues a refresh token in a new family and returns its raw value.
+     */
+    String issue(Long userId);
+
+    /**
+     * Issues the next refresh token of an existing family and returns its raw value.
+     */
+    String issue(Long userId, String familyId);
+
+    /**
+     * Revokes a live refresh token and returns it. Presenting a token that was already rotated
+     * revokes its whole family.
+     */
+    RefreshToken consume(String rawToken);
+}
@@ -0,0 +1,77 @@
+package ma.albaraka.bank.service.execution;
+
+import java.math.BigDecimal;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit of balance deltas and the writes that commit with them, applied by its owner shard in
+ * a single transaction. When the accounts span several shards the command is queued on each of
+ * them; the other shards park on it so the owner is the only writer of every account involved.
+ */
+class BalanceCommand {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private final SortedMap<Long, BigDecimal> deltas;
+    private final Runnable effects;
+    private final int owner;
+    private final boolean crossShard;
+    private final CountDownLatch parked;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+    BalanceCommand(SortedMap<Long, BigDecimal> deltas, Runnable effects, int owner, int shardCount) {
+        this.deltas = deltas;
+        this.effects = effects;
+        this.owner = owner;
+        this.crossShard = shardCount > 1;
+        this.parked = new CountDownLatch(shardCount - 1);
+    }
+
+    SortedMap<Long, BigDecimal> getDeltas() {
+        return deltas;
+    }
+
+    Runnable getEffects() {
+        return effects;
+    }
+
+    int getOwner() {
+        return owner;
+    }
+
+    boolean spansShards() {
+        return crossShard;
+    }
+
+    CountDownLatch getParked() {
+        return parked;
+    }
+
+    CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Claims the command for its owner; fails when the caller already withdrew it.
+     */
+    boolean start() {
+        return state.compareAndSet(QUEUED, RUNNING);
+    }
+
+    /**
+     * Withdraws a command nobody has started yet and fails it with {@code reason}.
+     */
+    boolean cancel(RuntimeException reason) {
+        if (!state.compareAndSet(QUEUED, CANCELLED)) {
+            return false;
+        }
+        completion.completeExceptionally(reason);
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package ma.albaraka.bank.service.execution;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.repository.AccountRepository;
+
+/**
+ * Net balance change per account of a set of operations. Accounts are kept in id order so that
+ * every writer touches rows in the same order and two units can never wait on each other.
+ */
+final class BalanceDeltas {
+
+    private BalanceDeltas() {
+    }
+
+    static SortedMap<Long, BigDecimal> of(Collection<Operation> operations) {
+        SortedMap<Long, BigDecimal> deltas = new TreeMap<>();
+        for (Operation operation : operations) {
+            switch (operation.getType()) {
+                case DEPOSIT:
+                    deltas.merge(operation.getDestinationAccount().getId(), operation.getAmount(), BigDecimal::add);
+                    break;
+
+                case WITHDRAWAL:
+                    deltas.merge(operation.getSourceAccount().getId(), operation.getAmount().negate(), BigDecimal::add);
+                    break;
+
+                case TRANSFER:
+                    deltas.merge(operation.getSourceAccount().getId(), operation.getAmount().negate(), BigDecimal::add);
+                    deltas.merge(operation.getDestinationAccount().getId(), operation.getAmount(), BigDecimal::add);
+                    break;
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Writes the deltas with conditional updates. A refused debit throws, and the surrounding
+     * transaction must then be rolled back.
+     */
+    static void apply(AccountRepository accountRepository, Map<Long, BigDecimal> deltas, LocalDateTime now) {
+        for (Map.Entry<Long, BigDecimal> entry : deltas.entrySet()) {
+            Long accountId = entry.getKey();
+            BigDecimal delta = entry.getValue();
+            if (delta.signum() < 0) {
+                if (accountRepository.debit(accountId, delta.negate(), now) == 0) {
+                    throw new BusinessRuleException("Insufficient balance");
+                }
+            } else if (accountRepository.credit(accountId, delta, now) == 0) {
+                throw new ResourceNotFoundException("Account", "id", accountId);
+            }
+        }
+    }
+}
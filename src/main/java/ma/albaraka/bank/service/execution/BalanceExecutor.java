@@ -0,0 +1,32 @@
+package ma.albaraka.bank.service.execution;
+
+import java.util.List;
+
+import ma.albaraka.bank.domain.entity.Operation;
+
+/**
+ * Applies the balance changes of approved operations to their accounts.
+ * The implementation is selected with {@code app.operations.execution-strategy}.
+ */
+public interface BalanceExecutor {
+
+    /**
+     * Applies the operations as one unit: {@code effects} writes what must commit together with
+     * the balances, such as the operation rows and their ledger postings, and runs in the same
+     * transaction just before them. Either everything commits or nothing does. When the unit is
+     * refused nothing has been written yet, so the caller may carry on with other work.
+     * <p>
+     * {@code effects} may run on another thread and may run again after a rolled back attempt,
+     * so it must not rely on the caller's persistence context.
+     */
+    void execute(List<Operation> operations, Runnable effects);
+
+    /**
+     * Whether {@link #execute} joins the caller's transaction. An executor that commits in one of
+     * its own must be called without a transaction, so the waiting caller does not hold a pooled
+     * connection the executor needs.
+     */
+    default boolean usesCallerTransaction() {
+        return true;
+    }
+}
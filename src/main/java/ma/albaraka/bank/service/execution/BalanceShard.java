@@ -0,0 +1,166 @@
+package ma.albaraka.bank.service.execution;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.AccountRepository;
+
+/**
+ * Single-threaded writer owning a fixed subset of accounts. Commands are drained from a
+ * lock-free ring and applied in batches so that one commit covers many operations. A failed
+ * batch is rolled back as a whole and its commands are replayed in a transaction each, so a
+ * refused command never takes its neighbours down and never leaves a partial write behind.
+ * <p>
+ * A command spanning several shards acts as a barrier: every other shard involved commits what
+ * it holds and parks on the command, and the owner applies it once all of them are parked.
+ */
+@Slf4j
+class BalanceShard implements Runnable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BARRIER_CHECK_MS = 1;
+
+    private final int index;
+    private final MpscRingQueue<BalanceCommand> inbox;
+    private final int batchSize;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardMetrics metrics;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    BalanceShard(int index, int queueCapacity, int batchSize, AccountRepository accountRepository,
+            TransactionTemplate transactionTemplate, ShardMetrics metrics) {
+        this.index = index;
+        this.inbox = new MpscRingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.worker = new Thread(this, "balance-shard-" + index);
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        worker.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    boolean submit(BalanceCommand command) {
+        if (!inbox.offer(command)) {
+            return false;
+        }
+        LockSupport.unpark(worker);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        List<BalanceCommand> batch = new ArrayList<>(batchSize);
+        while (running) {
+            BalanceCommand barrier = null;
+            BalanceCommand command;
+            int polled = 0;
+            while (batch.size() < batchSize && (command = inbox.poll()) != null) {
+                polled++;
+                if (command.spansShards()) {
+                    barrier = command;
+                    break;
+                }
+                if (command.start()) {
+                    batch.add(command);
+                }
+            }
+            if (!batch.isEmpty()) {
+                commitBatch(batch);
+                batch.clear();
+            }
+            if (barrier != null) {
+                passBarrier(barrier);
+            } else if (polled == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        BalanceCommand pending;
+        while ((pending = inbox.poll()) != null) {
+            pending.cancel(new BusinessRuleException("Balance engine is shutting down"));
+        }
+    }
+
+    private void passBarrier(BalanceCommand command) {
+        if (command.getOwner() != index) {
+            // Stay off the accounts of this shard until the owner has applied or dropped the command.
+            command.getParked().countDown();
+            command.getCompletion().exceptionally(failure -> null).join();
+            return;
+        }
+        try {
+            while (!command.getParked().await(BARRIER_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                if (command.getCompletion().isDone()) {
+                    return;
+                }
+                if (!running) {
+                    command.cancel(new BusinessRuleException("Balance engine is shutting down"));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.cancel(new BusinessRuleException("Balance engine is shutting down"));
+            return;
+        }
+        if (command.start()) {
+            commitSingle(command);
+        }
+    }
+
+    private void commitBatch(List<BalanceCommand> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                for (BalanceCommand command : batch) {
+                    apply(command, now);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).getCompletion().completeExceptionally(e);
+                return;
+            }
+            // One bad command must not fail its neighbours; isolate it by committing each on its own.
+            log.debug("Shard {} batch of {} failed, replaying commands one by one", index, batch.size(), e);
+            for (BalanceCommand command : batch) {
+                commitSingle(command);
+            }
+            return;
+        }
+        metrics.recordBatch(batch.size());
+        batch.forEach(command -> command.getCompletion().complete(null));
+    }
+
+    private void commitSingle(BalanceCommand command) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(command, LocalDateTime.now()));
+            metrics.recordBatch(1);
+            command.getCompletion().complete(null);
+        } catch (RuntimeException e) {
+            command.getCompletion().completeExceptionally(e);
+        }
+    }
+
+    private void apply(BalanceCommand command, LocalDateTime now) {
+        command.getEffects().run();
+        BalanceDeltas.apply(accountRepository, command.getDeltas(), now);
+    }
+}
@@ -0,0 +1,53 @@
+package ma.albaraka.bank.service.execution;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.repository.AccountRepository;
+
+/**
+ * Applies balances in the caller's transaction with conditional UPDATE statements, so the balance
+ * check and the write happen atomically in the database. The account rows are locked in id order
+ * and checked before anything is written: a refused unit leaves the transaction untouched, and
+ * two units sharing accounts queue on the first row instead of deadlocking.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.operations.execution-strategy", havingValue = "jpa", matchIfMissing = true)
+public class JpaBalanceExecutor implements BalanceExecutor {
+
+    private final AccountRepository accountRepository;
+
+    @Override
+    public void execute(List<Operation> operations, Runnable effects) {
+        SortedMap<Long, BigDecimal> deltas = BalanceDeltas.of(operations);
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (AccountRepository.LockedBalance locked : accountRepository.lockBalances(deltas.keySet())) {
+            balances.put(locked.getId(), locked.getBalance());
+        }
+        for (Map.Entry<Long, BigDecimal> entry : deltas.entrySet()) {
+            BigDecimal balance = balances.get(entry.getKey());
+            if (balance == null) {
+                throw new ResourceNotFoundException("Account", "id", entry.getKey());
+            }
+            if (balance.add(entry.getValue()).signum() < 0) {
+                throw new BusinessRuleException("Insufficient balance");
+            }
+        }
+
+        effects.run();
+        BalanceDeltas.apply(accountRepository, deltas, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,33 @@
+package ma.albaraka.bank.service.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+class ShardMetrics {
+
+    private final Counter commits;
+    private final DistributionSummary batchSizes;
+    private final Counter saturations;
+
+    ShardMetrics(MeterRegistry meterRegistry) {
+        this.commits = Counter.builder("operations.engine.commits")
+                .description("Group commits performed by the balance shards")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("operations.engine.batch.size")
+                .description("Commands applied per group commit")
+                .register(meterRegistry);
+        this.saturations = Counter.builder("operations.engine.saturated")
+                .description("Submissions rejected because a shard inbox was full")
+                .register(meterRegistry);
+    }
+
+    void recordBatch(int size) {
+        commits.increment();
+        batchSizes.record(size);
+    }
+
+    void recordSaturation() {
+        saturations.increment();
+    }
+}
@@ -0,0 +1,166 @@
+package ma.albaraka.bank.service.execution;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.AccountRepository;
+
+/**
+ * Routes every unit to the shard owning its accounts, so each account row has a single writer.
+ * The shard applies the balances and the caller's effects in one transaction of its own, which
+ * makes the operation rows, the ledger postings and the balances commit or roll back together.
+ * <p>
+ * A unit whose accounts live on different shards is owned by the lowest of them and queued on
+ * all of them; cross-shard units are queued under one lock so that every shard sees them in the
+ * same order, which is what keeps the parked shards from waiting on each other. A caller that
+ * times out withdraws its unit if no shard has started it yet, and otherwise waits for the
+ * outcome, so it never reports a failure for balances that were in fact applied.
+ * <p>
+ * Callers wait without a transaction of their own: a shard needs a pooled connection to commit,
+ * and callers parked on it while holding one could exhaust the pool and stall every shard.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.operations.execution-strategy", havingValue = "sharded")
+public class ShardedBalanceExecutor implements BalanceExecutor, DisposableBean {
+
+    private static final long SUBMIT_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final List<BalanceShard> shards = new ArrayList<>();
+    private final ReentrantLock crossShardLock = new ReentrantLock();
+    private final ShardMetrics metrics;
+    private final long timeoutMs;
+
+    public ShardedBalanceExecutor(
+            AccountRepository accountRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.operations.sharded.shards:4}") int shardCount,
+            @Value("${app.operations.sharded.queue-capacity:1024}") int queueCapacity,
+            @Value("${app.operations.sharded.batch-size:64}") int batchSize,
+            @Value("${app.operations.sharded.timeout-ms:5000}") long timeoutMs) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.metrics = new ShardMetrics(meterRegistry);
+        this.timeoutMs = timeoutMs;
+        for (int i = 0; i < Math.max(1, shardCount); i++) {
+            BalanceShard shard = new BalanceShard(i, queueCapacity, Math.max(1, batchSize),
+                    accountRepository, transactionTemplate, metrics);
+            shards.add(shard);
+            shard.start();
+        }
+    }
+
+    @Override
+    public void execute(List<Operation> operations, Runnable effects) {
+        SortedMap<Long, BigDecimal> deltas = BalanceDeltas.of(operations);
+        SortedSet<Integer> involved = new TreeSet<>();
+        deltas.keySet().forEach(accountId -> involved.add(shardOf(accountId)));
+
+        BalanceCommand command = new BalanceCommand(deltas, effects, involved.first(), involved.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (involved.size() == 1) {
+            if (!offer(shards.get(involved.first()), command, deadline)) {
+                throw saturated();
+            }
+        } else {
+            submitCrossShard(involved, command, deadline);
+        }
+        await(command);
+    }
+
+    @Override
+    public boolean usesCallerTransaction() {
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        shards.forEach(BalanceShard::stop);
+    }
+
+    private void submitCrossShard(SortedSet<Integer> involved, BalanceCommand command, long deadline) {
+        crossShardLock.lock();
+        try {
+            for (int shard : involved) {
+                if (!offer(shards.get(shard), command, deadline)) {
+                    // Shards that already queued the command skip it once it is cancelled.
+                    BusinessRuleException failure = saturated();
+                    command.cancel(failure);
+                    throw failure;
+                }
+            }
+        } finally {
+            crossShardLock.unlock();
+        }
+    }
+
+    private int shardOf(Long accountId) {
+        return (int) Math.floorMod(accountId, (long) shards.size());
+    }
+
+    private boolean offer(BalanceShard shard, BalanceCommand command, long deadline) {
+        while (!shard.submit(command)) {
+            if (System.nanoTime() > deadline) {
+                metrics.recordSaturation();
+                return false;
+            }
+            LockSupport.parkNanos(SUBMIT_BACKOFF_NANOS);
+        }
+        return true;
+    }
+
+    private BusinessRuleException saturated() {
+        return new BusinessRuleException("Balance engine is saturated, please retry");
+    }
+
+    private void await(BalanceCommand command) {
+        try {
+            try {
+                command.getCompletion().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!command.cancel(new BusinessRuleException("Balance update timed out"))) {
+                    log.debug("Balance update outlived its timeout while running, waiting for its outcome");
+                }
+                command.getCompletion().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConcurrencyFailureException) {
+                // The shard rolled the unit back, but the caller's transaction is not the one to retry.
+                throw new BusinessRuleException("Account was modified concurrently, please retry");
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessRuleException("Balance update failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (command.cancel(new BusinessRuleException("Balance update interrupted"))) {
+                throw new BusinessRuleException("Balance update interrupted");
+            }
+            // The unit is already running; its outcome will be visible in the operation's status.
+            throw new BusinessRuleException("Balance update interrupted while being applied, check the operation status");
+        }
+    }
+}
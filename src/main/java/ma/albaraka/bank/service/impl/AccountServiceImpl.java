@@ -1,23 +1,27 @@
 package ma.albaraka.bank.service.impl;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.cache.AccountOwnershipCache;
 import ma.albaraka.bank.domain.entity.Account;
 import ma.albaraka.bank.domain.entity.User;
 import ma.albaraka.bank.domain.enums.AccountStatus;
 import ma.albaraka.bank.dto.response.AccountResponse;
+import ma.albaraka.bank.dto.response.BalanceResponse;
 import ma.albaraka.bank.exception.ForbiddenException;
 import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.ledger.LedgerService;
 import ma.albaraka.bank.mapper.AccountMapper;
 import ma.albaraka.bank.repository.AccountRepository;
 import ma.albaraka.bank.repository.UserRepository;
+import ma.albaraka.bank.service.AccountNumberGenerator;
 import ma.albaraka.bank.service.AccountService;
 
 @Service
@@ -28,14 +32,16 @@ public class AccountServiceImpl implements AccountService {
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
     private final AccountMapper accountMapper;
-    private final Random random = new Random();
+    private final AccountNumberGenerator accountNumberGenerator;
+    private final AccountOwnershipCache accountOwnershipCache;
+    private final LedgerService ledgerService;
 
     @Override
     public AccountResponse createAccountForUser(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
 
-        String accountNumber = generateAccountNumber();
+        String accountNumber = accountNumberGenerator.nextAccountNumber();
 
         Account account = Account.builder()
                 .accountNumber(accountNumber)
@@ -59,14 +65,32 @@ public class AccountServiceImpl implements AccountService {
     @Override
     @Transactional(readOnly = true)
     public AccountResponse getAccountById(Long id, Long userId) {
+        checkOwnership(id, userId);
+
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
-        
-        if (!account.getOwner().getId().equals(userId)) {
+        return accountMapper.toResponse(account);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void checkOwnership(Long id, Long userId) {
+        if (!accountOwnershipCache.isOwnedBy(id, userId)) {
             throw new ForbiddenException("You can only access your own accounts");
         }
-        
-        return accountMapper.toResponse(account);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BalanceResponse getBalanceAsOf(Long id, Long userId, LocalDateTime asOf) {
+        checkOwnership(id, userId);
+
+        LocalDateTime at = asOf != null ? asOf : LocalDateTime.now();
+        return BalanceResponse.builder()
+                .accountId(id)
+                .balance(ledgerService.getBalanceAsOf(id, at).toPlainString())
+                .asOf(at)
+                .build();
     }
 
     @Override
@@ -99,6 +123,7 @@ public class AccountServiceImpl implements AccountService {
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
         account.setStatus(AccountStatus.FROZEN);
         accountRepository.save(account);
+        accountOwnershipCache.evict(id);
     }
 
     @Override
@@ -107,6 +132,7 @@ public class AccountServiceImpl implements AccountService {
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
         account.setStatus(AccountStatus.ACTIVE);
         accountRepository.save(account);
+        accountOwnershipCache.evict(id);
     }
 
     @Override
@@ -115,14 +141,6 @@ public class AccountServiceImpl implements AccountService {
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
         account.setStatus(AccountStatus.CLOSED);
         accountRepository.save(account);
-    }
-
-    private String generateAccountNumber() {
-        String accountNumber;
-        do {
-            int randomNumber = 10000000 + random.nextInt(90000000);
-            accountNumber = "AB-" + randomNumber;
-        } while (accountRepository.findByAccountNumber(accountNumber).isPresent());
-        return accountNumber;
+        accountOwnershipCache.evict(id);
     }
 }
@@ -5,25 +5,32 @@ import ma.albaraka.bank.domain.entity.Account;
 import ma.albaraka.bank.domain.entity.User;
 import ma.albaraka.bank.domain.enums.AccountStatus;
 import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.domain.entity.RefreshToken;
 import ma.albaraka.bank.dto.request.LoginRequest;
+import ma.albaraka.bank.dto.request.RefreshTokenRequest;
 import ma.albaraka.bank.dto.request.RegisterRequest;
 import ma.albaraka.bank.dto.response.AuthResponse;
 import ma.albaraka.bank.exception.BadRequestException;
+import ma.albaraka.bank.exception.TooManyRequestsException;
 import ma.albaraka.bank.exception.UnauthorizedException;
 import ma.albaraka.bank.repository.AccountRepository;
 import ma.albaraka.bank.repository.UserRepository;
 import ma.albaraka.bank.security.JwtTokenProvider;
+import ma.albaraka.bank.security.LoginAttemptThrottle;
+import ma.albaraka.bank.service.AccountNumberGenerator;
 import ma.albaraka.bank.service.AuthService;
+import ma.albaraka.bank.service.RefreshTokenService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -35,9 +42,22 @@ public class AuthServiceImpl implements AuthService {
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
     private final PasswordEncoder passwordEncoder;
-
+    private final AccountNumberGenerator accountNumberGenerator;
+    private final RefreshTokenService refreshTokenService;
+    private final LoginAttemptThrottle loginAttemptThrottle;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Runs without a transaction: the password check waits for the bounded hashing pool, and must
+     * not hold a database connection meanwhile. Each lookup and write commits on its own.
+     */
     @Override
-    public AuthResponse login(LoginRequest request) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AuthResponse login(LoginRequest request, String clientIp) {
+        if (loginAttemptThrottle.isBlocked(request.getEmail(), clientIp)) {
+            throw new TooManyRequestsException("Too many failed login attempts, please try again later");
+        }
+
         try {
             authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
@@ -50,53 +70,70 @@ public class AuthServiceImpl implements AuthService {
                 throw new UnauthorizedException("Account is inactive");
             }
 
-            String token = jwtTokenProvider.generateToken(
-                    user.getEmail(),
-                    user.getRole().name(),
-                    user.getId()
-            );
-
-            return AuthResponse.builder()
-                    .token(token)
-                    .type("Bearer")
-                    .userId(user.getId())
-                    .email(user.getEmail())
-                    .fullName(user.getFullName())
-                    .role(user.getRole().name())
-                    .build();
+            loginAttemptThrottle.recordSuccess(request.getEmail());
+            return buildAuthResponse(user, refreshTokenService.issue(user.getId()));
 
         } catch (AuthenticationException e) {
+            loginAttemptThrottle.recordFailure(request.getEmail(), clientIp);
             throw new UnauthorizedException("Invalid email or password");
         }
     }
 
+    /**
+     * Hashes the password before the transaction opens, for the same reason as {@link #login}.
+     */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AuthResponse register(RegisterRequest request) {
         // Check if user already exists
         if (userRepository.findByEmail(request.getEmail()).isPresent()) {
             throw new BadRequestException("Email already registered");
         }
 
-        // Create user with CLIENT role by default
-        User user = User.builder()
-                .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .fullName(request.getFullName())
-                .role(Role.CLIENT)
-                .active(true)
-                .build();
-        user = userRepository.save(user);
-
-        // Create account automatically
-        Account account = Account.builder()
-                .accountNumber(generateAccountNumber())
-                .owner(user)
-                .balance(BigDecimal.ZERO)
-                .status(AccountStatus.ACTIVE)
-                .build();
-        accountRepository.save(account);
+        String encodedPassword = passwordEncoder.encode(request.getPassword());
+
+        return transactionTemplate.execute(status -> {
+            if (userRepository.findByEmail(request.getEmail()).isPresent()) {
+                throw new BadRequestException("Email already registered");
+            }
+
+            // Create user with CLIENT role by default
+            User user = User.builder()
+                    .email(request.getEmail())
+                    .password(encodedPassword)
+                    .fullName(request.getFullName())
+                    .role(Role.CLIENT)
+                    .active(true)
+                    .build();
+            user = userRepository.save(user);
+
+            // Create account automatically
+            Account account = Account.builder()
+                    .accountNumber(accountNumberGenerator.nextAccountNumber())
+                    .owner(user)
+                    .balance(BigDecimal.ZERO)
+                    .status(AccountStatus.ACTIVE)
+                    .build();
+            accountRepository.save(account);
+
+            return buildAuthResponse(user, refreshTokenService.issue(user.getId()));
+        });
+    }
+
+    @Override
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public AuthResponse refresh(RefreshTokenRequest request) {
+        // A reused token revokes its family before the exception, so that update must still commit.
+        RefreshToken current = refreshTokenService.consume(request.getRefreshToken());
 
-        // Generate token
+        User user = userRepository.findById(current.getUserId())
+                .filter(User::getActive)
+                .orElseThrow(() -> new UnauthorizedException("Account is inactive"));
+
+        return buildAuthResponse(user, refreshTokenService.issue(user.getId(), current.getFamilyId()));
+    }
+
+    private AuthResponse buildAuthResponse(User user, String refreshToken) {
         String token = jwtTokenProvider.generateToken(
                 user.getEmail(),
                 user.getRole().name(),
@@ -105,6 +142,7 @@ public class AuthServiceImpl implements AuthService {
 
         return AuthResponse.builder()
                 .token(token)
+                .refreshToken(refreshToken)
                 .type("Bearer")
                 .userId(user.getId())
                 .email(user.getEmail())
@@ -112,13 +150,4 @@ public class AuthServiceImpl implements AuthService {
                 .role(user.getRole().name())
                 .build();
     }
-
-    private String generateAccountNumber() {
-        Random random = new Random();
-        String accountNumber;
-        do {
-            accountNumber = "AB-" + String.format("%08d", random.nextInt(100000000));
-        } while (accountRepository.existsByAccountNumber(accountNumber));
-        return accountNumber;
-    }
 }
@@ -0,0 +1,95 @@
+package ma.albaraka.bank.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.NumberSequence;
+import ma.albaraka.bank.repository.NumberSequenceRepository;
+import ma.albaraka.bank.service.AccountNumberGenerator;
+
+/**
+ * Hands out account numbers from blocks reserved in the number_sequences table. A block is
+ * committed in its own transaction before any number from it is used, so a restart or a rolled
+ * back registration can leave gaps but never reuses a number.
+ * <p>
+ * Numbers are "AB-" followed by eight sequence digits and a Luhn check digit. The extra digit
+ * keeps them distinct from the older eight-digit random numbers.
+ */
+@Slf4j
+@Service
+public class BlockAccountNumberGenerator implements AccountNumberGenerator {
+
+    private static final String SEQUENCE_NAME = "account_number";
+    private static final String PREFIX = "AB-";
+    private static final long MAX_VALUE = 99_999_999L;
+
+    private final NumberSequenceRepository numberSequenceRepository;
+    private final TransactionTemplate reservationTransaction;
+    private final long blockSize;
+
+    private long next;
+    private long limit;
+
+    public BlockAccountNumberGenerator(
+            NumberSequenceRepository numberSequenceRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.accounts.number-block-size:100}") long blockSize) {
+        this.numberSequenceRepository = numberSequenceRepository;
+        this.reservationTransaction = new TransactionTemplate(transactionManager);
+        this.reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    @Override
+    public synchronized String nextAccountNumber() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return format(next++);
+    }
+
+    private void reserveBlock() {
+        Long end = reservationTransaction.execute(status -> {
+            if (numberSequenceRepository.advance(SEQUENCE_NAME, blockSize) == 0) {
+                throw new IllegalStateException("Sequence " + SEQUENCE_NAME + " is missing");
+            }
+            return numberSequenceRepository.findById(SEQUENCE_NAME)
+                    .map(NumberSequence::getNextValue)
+                    .orElseThrow(() -> new IllegalStateException("Sequence " + SEQUENCE_NAME + " is missing"));
+        });
+
+        long start = end - blockSize;
+        if (start > MAX_VALUE) {
+            throw new IllegalStateException("Account number space is exhausted");
+        }
+        next = start;
+        limit = Math.min(end, MAX_VALUE + 1);
+        log.debug("Reserved account numbers {} to {}", next, limit - 1);
+    }
+
+    private static String format(long value) {
+        String digits = String.format("%08d", value);
+        return PREFIX + digits + checkDigit(digits);
+    }
+
+    private static int checkDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
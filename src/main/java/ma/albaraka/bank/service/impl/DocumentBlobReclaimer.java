@@ -0,0 +1,58 @@
+package ma.albaraka.bank.service.impl;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+
+/**
+ * Deletes blobs nobody references, together with their content. The blob row stays locked until
+ * the content is gone, so an upload of the same content either references the blob before the
+ * lock is taken, or waits, finds no row and writes the content again after it was deleted.
+ */
+@Component
+public class DocumentBlobReclaimer {
+
+    private final DocumentBlobRepository documentBlobRepository;
+    private final DocumentStorage documentStorage;
+    private final TransactionTemplate transactionTemplate;
+
+    public DocumentBlobReclaimer(DocumentBlobRepository documentBlobRepository,
+                                 DocumentStorage documentStorage,
+                                 PlatformTransactionManager transactionManager) {
+        this.documentBlobRepository = documentBlobRepository;
+        this.documentStorage = documentStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also called after the commit of the transaction that dropped the last reference.
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Deletes the blob and its content when its reference count is zero; returns whether it did.
+     */
+    public boolean reclaim(String contentHash) {
+        Boolean reclaimed = transactionTemplate.execute(status -> {
+            DocumentBlob blob = documentBlobRepository.findAndLockById(contentHash).orElse(null);
+            if (blob == null || blob.getRefCount() > 0) {
+                return false;
+            }
+            documentBlobRepository.deleteIfUnreferenced(contentHash);
+            String location = documentStorage.exists(blob.getStoragePath())
+                    ? blob.getStoragePath()
+                    : documentStorage.locationOf(contentHash);
+            try {
+                documentStorage.delete(location);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to delete content of blob " + contentHash, e);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(reclaimed);
+    }
+}
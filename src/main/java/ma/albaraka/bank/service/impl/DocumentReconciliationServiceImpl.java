@@ -0,0 +1,290 @@
+package ma.albaraka.bank.service.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Document;
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import ma.albaraka.bank.dto.response.OrphanReconciliationResponse;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.repository.DocumentRepository;
+import ma.albaraka.bank.service.DocumentReconciliationService;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+
+/**
+ * Reclaims stored content that no row refers to, such as files of uploads that rolled back, and
+ * reports documents whose content is gone. Three passes:
+ * <ul>
+ * <li>blobs whose reference count is zero past the grace period are deleted with their content, under
+ * the blob row lock;</li>
+ * <li>the storage is listed lazily and checked against the rows a chunk at a time, with indexed
+ * IN queries, on a small pool; content younger than the grace period is left alone because its
+ * upload may not have committed yet;</li>
+ * <li>documents are walked by id and checked for content, which is only reported, never repaired.</li>
+ * </ul>
+ * Only one chunk per thread is in flight at a time, so memory use does not grow with the data.
+ */
+@Slf4j
+@Service
+public class DocumentReconciliationServiceImpl implements DocumentReconciliationService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final DocumentRepository documentRepository;
+    private final DocumentBlobRepository documentBlobRepository;
+    private final DocumentStorage documentStorage;
+    private final DocumentBlobReclaimer documentBlobReclaimer;
+    private final boolean enabled;
+    private final Duration grace;
+    private final int threads;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public DocumentReconciliationServiceImpl(
+            DocumentRepository documentRepository,
+            DocumentBlobRepository documentBlobRepository,
+            DocumentStorage documentStorage,
+            DocumentBlobReclaimer documentBlobReclaimer,
+            @Value("${app.documents.reconciliation.enabled:true}") boolean enabled,
+            @Value("${app.documents.reconciliation.grace-minutes:60}") long graceMinutes,
+            @Value("${app.documents.reconciliation.threads:4}") int threads) {
+        this.documentRepository = documentRepository;
+        this.documentBlobRepository = documentBlobRepository;
+        this.documentStorage = documentStorage;
+        this.documentBlobReclaimer = documentBlobReclaimer;
+        this.enabled = enabled;
+        this.grace = Duration.ofMinutes(graceMinutes);
+        this.threads = Math.max(1, threads);
+    }
+
+    @Scheduled(fixedDelayString = "${app.documents.reconciliation.interval-ms:86400000}",
+            initialDelayString = "${app.documents.reconciliation.initial-delay-ms:3600000}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (BusinessRuleException e) {
+            log.debug("Skipping scheduled document reconciliation: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public OrphanReconciliationResponse reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessRuleException("A document reconciliation is already running");
+        }
+
+        long start = System.currentTimeMillis();
+        Instant cutoff = Instant.now().minus(grace);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Tally tally = new Tally();
+            deleteUnreferencedBlobs(cutoff, tally);
+            reconcileContent(new ChunkRunner(executor), cutoff, tally);
+            checkDocuments(new ChunkRunner(executor), tally);
+
+            OrphanReconciliationResponse response = OrphanReconciliationResponse.builder()
+                    .scannedFiles(tally.scannedFiles.get())
+                    .orphanFilesDeleted(tally.orphanFilesDeleted.get())
+                    .reclaimedBytes(tally.reclaimedBytes.get())
+                    .unreferencedBlobsDeleted(tally.unreferencedBlobsDeleted.get())
+                    .scannedDocuments(tally.scannedDocuments.get())
+                    .documentsMissingContent(tally.documentsMissingContent.get())
+                    .durationMs(System.currentTimeMillis() - start)
+                    .build();
+            log.info("Document reconciliation finished: {}", response);
+            return response;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list stored documents", e);
+        } finally {
+            executor.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    private void deleteUnreferencedBlobs(Instant cutoff, Tally tally) {
+        LocalDateTime before = LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault());
+        List<DocumentBlob> chunk;
+        int deletedInChunk;
+        do {
+            chunk = documentBlobRepository.findUnreferencedCreatedBefore(before, PageRequest.of(0, CHUNK_SIZE));
+            deletedInChunk = 0;
+            for (DocumentBlob blob : chunk) {
+                try {
+                    // Rechecked under the row lock: an upload may have referenced the content since.
+                    if (documentBlobReclaimer.reclaim(blob.getContentHash())) {
+                        deletedInChunk++;
+                        tally.unreferencedBlobsDeleted.incrementAndGet();
+                        tally.orphanFilesDeleted.incrementAndGet();
+                        tally.reclaimedBytes.addAndGet(blob.getFileSize());
+                    }
+                } catch (DataAccessException | IllegalStateException e) {
+                    log.warn("Could not delete unreferenced blob {}: {}", blob.getContentHash(), e.getMessage());
+                }
+            }
+        } while (chunk.size() == CHUNK_SIZE && deletedInChunk > 0);
+    }
+
+    private void reconcileContent(ChunkRunner runner, Instant cutoff, Tally tally) throws IOException {
+        try (Stream<String> locations = documentStorage.locations()) {
+            Iterator<String> iterator = locations.iterator();
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                    List<String> batch = chunk;
+                    runner.submit(() -> reconcileChunk(batch, cutoff, tally));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+        }
+        runner.awaitAll();
+    }
+
+    private void reconcileChunk(List<String> locations, Instant cutoff, Tally tally) {
+        tally.scannedFiles.addAndGet(locations.size());
+
+        Set<String> aliases = new HashSet<>();
+        Set<String> hashes = new HashSet<>();
+        for (String location : locations) {
+            aliases.addAll(documentStorage.aliasesOf(location));
+            String key = location.substring(location.lastIndexOf('/') + 1);
+            if (CONTENT_HASH.matcher(key).matches()) {
+                hashes.add(key);
+            }
+        }
+
+        Set<String> referenced = new HashSet<>(documentRepository.findStoragePathsIn(aliases));
+        referenced.addAll(documentRepository.findThumbnailPathsIn(aliases));
+        referenced.addAll(documentBlobRepository.findStoragePathsIn(aliases));
+        // A blob found at the location computed from its hash is in use even when its row holds an older path.
+        Set<String> knownHashes = hashes.isEmpty()
+                ? Set.of()
+                : new HashSet<>(documentBlobRepository.findContentHashesIn(hashes));
+
+        for (String location : locations) {
+            String key = location.substring(location.lastIndexOf('/') + 1);
+            if (knownHashes.contains(key) || documentStorage.aliasesOf(location).stream().anyMatch(referenced::contains)) {
+                continue;
+            }
+            try {
+                if (documentStorage.lastModified(location).isAfter(cutoff)) {
+                    continue;
+                }
+            } catch (IOException e) {
+                continue;
+            }
+            deleteContent(location, tally);
+        }
+    }
+
+    private void checkDocuments(ChunkRunner runner, Tally tally) {
+        Long afterId = 0L;
+        List<Document> chunk;
+        do {
+            chunk = documentRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            List<Document> batch = chunk;
+            runner.submit(() -> batch.forEach(document -> checkDocument(document, tally)));
+            afterId = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == CHUNK_SIZE);
+        runner.awaitAll();
+    }
+
+    private void checkDocument(Document document, Tally tally) {
+        tally.scannedDocuments.incrementAndGet();
+        if (documentStorage.exists(document.getStoragePath())) {
+            return;
+        }
+        if (document.getContentHash() != null
+                && documentStorage.exists(documentStorage.locationOf(document.getContentHash()))) {
+            return;
+        }
+        tally.documentsMissingContent.incrementAndGet();
+        log.warn("Document {} has no stored content at {}", document.getId(), document.getStoragePath());
+    }
+
+    private void deleteContent(String location, Tally tally) {
+        try {
+            long size = documentStorage.exists(location) ? documentStorage.open(location).contentLength() : 0;
+            documentStorage.delete(location);
+            tally.orphanFilesDeleted.incrementAndGet();
+            tally.reclaimedBytes.addAndGet(size);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete orphan content {}: {}", location, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs chunks on the pool with at most two per thread queued or running.
+     */
+    private final class ChunkRunner {
+
+        private final ExecutorService executor;
+        private final Semaphore inFlight = new Semaphore(threads * 2);
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        private ChunkRunner(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        private void submit(Runnable chunk) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reconciling documents", e);
+            }
+            pending.removeIf(CompletableFuture::isDone);
+            pending.add(CompletableFuture.runAsync(chunk, executor).whenComplete((result, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    log.warn("Document reconciliation chunk failed: {}", error.getMessage());
+                }
+            }));
+        }
+
+        private void awaitAll() {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+            pending.clear();
+        }
+    }
+
+    private static final class Tally {
+
+        private final AtomicLong scannedFiles = new AtomicLong();
+        private final AtomicLong orphanFilesDeleted = new AtomicLong();
+        private final AtomicLong reclaimedBytes = new AtomicLong();
+        private final AtomicLong unreferencedBlobsDeleted = new AtomicLong();
+        private final AtomicLong scannedDocuments = new AtomicLong();
+        private final AtomicLong documentsMissingContent = new AtomicLong();
+    }
+}
@@ -1,28 +1,41 @@
 package ma.albaraka.bank.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.cache.AfterCommit;
 import ma.albaraka.bank.domain.entity.Document;
+import ma.albaraka.bank.domain.entity.DocumentBlob;
 import ma.albaraka.bank.domain.entity.Operation;
 import ma.albaraka.bank.domain.enums.DocumentType;
+import ma.albaraka.bank.dto.response.DocumentContent;
 import ma.albaraka.bank.dto.response.DocumentResponse;
 import ma.albaraka.bank.exception.BadRequestException;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.exception.ForbiddenException;
 import ma.albaraka.bank.exception.ResourceNotFoundException;
 import ma.albaraka.bank.mapper.DocumentMapper;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
 import ma.albaraka.bank.repository.DocumentRepository;
 import ma.albaraka.bank.repository.OperationRepository;
 import ma.albaraka.bank.service.DocumentService;
-import org.springframework.beans.factory.annotation.Value;
+import ma.albaraka.bank.service.processing.DocumentUploadedEvent;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,11 +46,18 @@ public class DocumentServiceImpl implements DocumentService {
     private final DocumentRepository documentRepository;
     private final OperationRepository operationRepository;
     private final DocumentMapper documentMapper;
-
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    private final DocumentBlobRepository documentBlobRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final DocumentStorage documentStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentBlobReclaimer documentBlobReclaimer;
 
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_BYTES = 8;
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
     private static final List<String> ALLOWED_CONTENT_TYPES = List.of(
             "application/pdf",
             "image/jpeg",
@@ -63,28 +83,28 @@ public class DocumentServiceImpl implements DocumentService {
             throw new BadRequestException("Invalid file type. Only PDF, JPG, and PNG are allowed");
         }
 
-        DocumentType documentType = getDocumentType(contentType);
-        String originalFilename = file.getOriginalFilename();
-        String storedFilename = UUID.randomUUID().toString() + "_" + originalFilename;
-
         try {
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+            // First pass: hash and sniff without writing, so a duplicate never touches the disk.
+            ContentScan scan = scan(file);
+            DocumentType documentType = getDocumentType(contentType);
+            if (scan.detectedType != documentType) {
+                throw new BadRequestException("File content does not match its declared type");
             }
 
-            Path filePath = uploadPath.resolve(storedFilename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            DocumentBlob blob = acquireBlob(file, scan);
 
             Document document = Document.builder()
                     .operation(operation)
-                    .fileName(originalFilename)
+                    .fileName(file.getOriginalFilename())
                     .fileType(documentType)
-                    .storagePath(filePath.toString())
-                    .fileSize(file.getSize())
+                    .storagePath(blob.getStoragePath())
+                    .fileSize(scan.size)
+                    .sha256(scan.sha256)
+                    .contentHash(blob.getContentHash())
                     .build();
 
             Document savedDocument = documentRepository.save(document);
+            eventPublisher.publishEvent(new DocumentUploadedEvent(savedDocument.getId()));
             return documentMapper.toResponse(savedDocument);
 
         } catch (IOException e) {
@@ -109,18 +129,66 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     @Override
-    public void deleteDocument(Long id) {
+    @Transactional(readOnly = true)
+    public DocumentContent getDocumentContent(Long id) {
         Document document = documentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Document", "id", id));
+        return toContent(document);
+    }
 
-        try {
-            Path filePath = Paths.get(document.getStoragePath());
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to delete file", e);
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentContent getDocumentContent(Long id, Long userId) {
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Document", "id", id));
+
+        if (!document.getOperation().getCreatedBy().getId().equals(userId)) {
+            throw new ForbiddenException("You can only access documents of your own operations");
+        }
+
+        return toContent(document);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentContent getDocumentThumbnail(Long id) {
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Document", "id", id));
+
+        if (document.getThumbnailPath() == null || !documentStorage.exists(document.getThumbnailPath())) {
+            throw new ResourceNotFoundException("Thumbnail of document " + id + " is not available");
         }
 
+        return DocumentContent.builder()
+                .resource(documentStorage.open(document.getThumbnailPath()))
+                .fileName("thumbnail-" + id + ".png")
+                .fileType(DocumentType.PNG)
+                .etag("thumbnail-" + (document.getSha256() != null ? document.getSha256() : id))
+                .build();
+    }
+
+    @Override
+    public void deleteDocument(Long id) {
+        Document document = documentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Document", "id", id));
+
         documentRepository.delete(document);
+
+        if (document.getThumbnailPath() != null) {
+            String thumbnailPath = document.getThumbnailPath();
+            AfterCommit.run(() -> deleteContent(thumbnailPath));
+        }
+
+        // Content is only removed once the row deletion has committed; a rollback leaves both in place.
+        if (document.getContentHash() == null) {
+            String storagePath = document.getStoragePath();
+            AfterCommit.run(() -> deleteContent(storagePath));
+            return;
+        }
+
+        String contentHash = document.getContentHash();
+        documentBlobRepository.decrementRefCount(contentHash);
+        AfterCommit.run(() -> documentBlobReclaimer.reclaim(contentHash));
     }
 
     private DocumentType getDocumentType(String contentType) {
@@ -135,4 +203,166 @@ public class DocumentServiceImpl implements DocumentService {
                 throw new BadRequestException("Unsupported file type");
         };
     }
+
+    private DocumentContent toContent(Document document) {
+        String location = locate(document);
+        if (!documentStorage.exists(location)) {
+            throw new ResourceNotFoundException("Content of document " + document.getId() + " is not available");
+        }
+
+        // Stored files never change, so the id and size identify the bytes of documents uploaded before hashing.
+        String etag = document.getSha256() != null
+                ? document.getSha256()
+                : "doc-" + document.getId() + "-" + document.getFileSize();
+
+        return DocumentContent.builder()
+                .resource(documentStorage.open(location))
+                .fileName(document.getFileName())
+                .fileType(document.getFileType())
+                .etag(etag)
+                .build();
+    }
+
+    private ContentScan scan(MultipartFile file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] header = new byte[MAGIC_BYTES];
+        int headerLength = 0;
+        long size = 0;
+
+        try (ReadableByteChannel channel = Channels.newChannel(file.getInputStream())) {
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                buffer.flip();
+                if (headerLength < MAGIC_BYTES) {
+                    int take = Math.min(MAGIC_BYTES - headerLength, buffer.remaining());
+                    buffer.get(buffer.position(), header, headerLength, take);
+                    headerLength += take;
+                }
+                digest.update(buffer);
+                buffer.clear();
+
+                size += read;
+                if (size > MAX_FILE_SIZE) {
+                    throw new BadRequestException("File size exceeds maximum limit of 5MB");
+                }
+            }
+        }
+
+        return new ContentScan(HexFormat.of().formatHex(digest.digest()), size, sniff(header, headerLength));
+    }
+
+    private DocumentBlob acquireBlob(MultipartFile file, ContentScan scan) throws IOException {
+        if (!documentBlobRepository.existsById(scan.sha256)) {
+            // Second pass, only for new content. Content left behind by an upload that rolled back is
+            // written again, which also keeps it younger than the orphan reconciler's grace period.
+            String location = documentStorage.write(scan.sha256, file.getInputStream(), scan.size);
+
+            DocumentBlob blob = DocumentBlob.builder()
+                    .contentHash(scan.sha256)
+                    .storagePath(location)
+                    .fileSize(scan.size)
+                    .refCount(0)
+                    .build();
+            try {
+                // Registered in its own transaction so a concurrent upload of the same content can
+                // lose the insert race without rolling back this one.
+                blobTransaction().executeWithoutResult(status -> documentBlobRepository.saveAndFlush(blob));
+            } catch (DataIntegrityViolationException e) {
+                // Another upload registered the same content first; its row is the one to reference.
+            }
+        }
+        return referenceBlob(file, scan);
+    }
+
+    /**
+     * Adds a reference to the blob of the content, which keeps its row locked, and thus out of the
+     * reclaimer's reach, until this upload commits. Content deleted by a reclaim that then failed to
+     * commit is written again.
+     */
+    private DocumentBlob referenceBlob(MultipartFile file, ContentScan scan) throws IOException {
+        if (documentBlobRepository.incrementRefCount(scan.sha256) == 0) {
+            // Reclaimed since it was looked up; retrying writes the content again.
+            throw new BusinessRuleException("Stored content was deleted concurrently, please retry");
+        }
+        // A locking read sees the row even when it was registered after this transaction's snapshot.
+        DocumentBlob blob = documentBlobRepository.findAndLockById(scan.sha256)
+                .orElseThrow(() -> new IllegalStateException("Blob " + scan.sha256 + " vanished"));
+        if (!documentStorage.exists(blob.getStoragePath())) {
+            blob.setStoragePath(documentStorage.write(scan.sha256, file.getInputStream(), scan.size));
+        }
+        return blob;
+    }
+
+    private String locate(Document document) {
+        String location = document.getStoragePath();
+        if (document.getContentHash() != null && !documentStorage.exists(location)) {
+            // The migration or a pack compaction moved the blob after this row was loaded; the blob
+            // row is rewritten first and holds the current location.
+            return documentBlobRepository.findById(document.getContentHash())
+                    .map(DocumentBlob::getStoragePath)
+                    .orElse(location);
+        }
+        return location;
+    }
+
+    private void deleteContent(String location) {
+        try {
+            documentStorage.delete(location);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete file", e);
+        }
+    }
+
+    private TransactionTemplate blobTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private DocumentType sniff(byte[] header, int length) {
+        if (startsWith(header, length, PDF_MAGIC)) {
+            return DocumentType.PDF;
+        }
+        if (startsWith(header, length, PNG_MAGIC)) {
+            return DocumentType.PNG;
+        }
+        if (startsWith(header, length, JPEG_MAGIC)) {
+            return DocumentType.JPG;
+        }
+        throw new BadRequestException("Unrecognized file content. Only PDF, JPG, and PNG are allowed");
+    }
+
+    private boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class ContentScan {
+
+        private final String sha256;
+        private final long size;
+        private final DocumentType detectedType;
+
+        private ContentScan(String sha256, long size, DocumentType detectedType) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.detectedType = detectedType;
+        }
+    }
 }
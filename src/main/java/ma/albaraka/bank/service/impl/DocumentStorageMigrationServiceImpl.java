@@ -0,0 +1,282 @@
+package ma.albaraka.bank.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Document;
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import ma.albaraka.bank.domain.enums.StorageMigrationStatus;
+import ma.albaraka.bank.dto.response.StorageMigrationResponse;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.repository.DocumentRepository;
+import ma.albaraka.bank.service.DocumentStorageMigrationService;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+
+/**
+ * Moves stored documents to the locations the configured {@link DocumentStorage} assigns them,
+ * e.g. from the flat upload directory into sharded directories. Files of a chunk are moved in
+ * parallel, then the rows of the chunk are rewritten in one transaction. A file is always moved
+ * before its row, so a run interrupted in between finds it at the new location and only rewrites
+ * the row; the job can simply be run again. It runs in the background, one at a time, and its
+ * progress is read with {@link #getStatus()}.
+ */
+@Slf4j
+@Service
+public class DocumentStorageMigrationServiceImpl implements DocumentStorageMigrationService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final DocumentRepository documentRepository;
+    private final DocumentBlobRepository documentBlobRepository;
+    private final DocumentStorage documentStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final int threads;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "document-storage-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Job job = new Job(StorageMigrationStatus.IDLE);
+
+    public DocumentStorageMigrationServiceImpl(
+            DocumentRepository documentRepository,
+            DocumentBlobRepository documentBlobRepository,
+            DocumentStorage documentStorage,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.storage.migration.threads:4}") int threads) {
+        this.documentRepository = documentRepository;
+        this.documentBlobRepository = documentBlobRepository;
+        this.documentStorage = documentStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public synchronized StorageMigrationResponse start() {
+        if (job.status == StorageMigrationStatus.RUNNING) {
+            throw new BusinessRuleException("A document storage migration is already running");
+        }
+        Job started = new Job();
+        job = started;
+        runner.execute(() -> run(started));
+        return started.toResponse();
+    }
+
+    @Override
+    public StorageMigrationResponse getStatus() {
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private void run(Job current) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            migrateBlobs(executor, current.tally);
+            migrateLegacyDocuments(executor, current.tally);
+            current.finish(StorageMigrationStatus.COMPLETED, null);
+            log.info("Document storage migration finished: {}", current.toResponse());
+        } catch (RuntimeException e) {
+            current.finish(StorageMigrationStatus.FAILED, e.getMessage());
+            log.error("Document storage migration failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void migrateBlobs(ExecutorService executor, Tally tally) {
+        String afterHash = "";
+        List<DocumentBlob> chunk;
+        do {
+            chunk = documentBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(
+                    afterHash, PageRequest.of(0, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            List<Relocation<String>> relocations = new ArrayList<>(chunk.size());
+            for (DocumentBlob blob : chunk) {
+                relocations.add(new Relocation<>(blob.getContentHash(), blob.getStoragePath(),
+                        documentStorage.targetOf(blob.getContentHash(), blob.getStoragePath())));
+            }
+
+            List<Relocation<String>> moved = relocate(relocations, executor, tally);
+            transactionTemplate.executeWithoutResult(status -> moved.forEach(relocation -> {
+                documentBlobRepository.updateStoragePath(relocation.id, relocation.to);
+                documentRepository.updateStoragePathByContentHash(relocation.id, relocation.to);
+            }));
+
+            afterHash = chunk.get(chunk.size() - 1).getContentHash();
+        } while (chunk.size() == CHUNK_SIZE);
+    }
+
+    private void migrateLegacyDocuments(ExecutorService executor, Tally tally) {
+        Long afterId = 0L;
+        List<Document> chunk;
+        do {
+            chunk = documentRepository.findByContentHashIsNullAndIdGreaterThanOrderByIdAsc(
+                    afterId, PageRequest.of(0, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            List<Relocation<Long>> relocations = new ArrayList<>(chunk.size());
+            for (Document document : chunk) {
+                String key = Paths.get(document.getStoragePath()).getFileName().toString();
+                relocations.add(new Relocation<>(document.getId(), document.getStoragePath(),
+                        documentStorage.targetOf(key, document.getStoragePath())));
+            }
+
+            List<Relocation<Long>> moved = relocate(relocations, executor, tally);
+            transactionTemplate.executeWithoutResult(status -> moved.forEach(relocation ->
+                    documentRepository.updateStoragePath(relocation.id, relocation.to)));
+
+            afterId = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == CHUNK_SIZE);
+    }
+
+    /**
+     * Moves the files of a chunk in parallel and returns the relocations whose rows need rewriting.
+     */
+    private <K> List<Relocation<K>> relocate(List<Relocation<K>> relocations, ExecutorService executor, Tally tally) {
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(relocations.size());
+        for (Relocation<K> relocation : relocations) {
+            outcomes.add(CompletableFuture.supplyAsync(() -> move(relocation), executor));
+        }
+
+        List<Relocation<K>> moved = new ArrayList<>();
+        for (int i = 0; i < relocations.size(); i++) {
+            Outcome outcome = outcomes.get(i).join();
+            tally.count(outcome);
+            if (outcome == Outcome.MOVED) {
+                moved.add(relocations.get(i));
+            }
+        }
+        return moved;
+    }
+
+    private Outcome move(Relocation<?> relocation) {
+        if (relocation.from.equals(relocation.to)) {
+            return Outcome.IN_PLACE;
+        }
+        try {
+            if (documentStorage.exists(relocation.from)) {
+                documentStorage.move(relocation.from, relocation.to);
+                return Outcome.MOVED;
+            }
+            if (documentStorage.exists(relocation.to)) {
+                // Moved by an earlier run that stopped before rewriting the row.
+                return Outcome.MOVED;
+            }
+            log.warn("Stored content {} is missing, leaving its row unchanged", relocation.from);
+            return Outcome.MISSING;
+        } catch (IOException e) {
+            log.warn("Could not move {} to {}: {}", relocation.from, relocation.to, e.getMessage());
+            return Outcome.FAILED;
+        }
+    }
+
+    private enum Outcome {
+        MOVED,
+        IN_PLACE,
+        MISSING,
+        FAILED
+    }
+
+    private static final class Relocation<K> {
+
+        private final K id;
+        private final String from;
+        private final String to;
+
+        private Relocation(K id, String from, String to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class Tally {
+
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong moved = new AtomicLong();
+        private final AtomicLong inPlace = new AtomicLong();
+        private final AtomicLong missing = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private void count(Outcome outcome) {
+            scanned.incrementAndGet();
+            switch (outcome) {
+                case MOVED -> moved.incrementAndGet();
+                case IN_PLACE -> inPlace.incrementAndGet();
+                case MISSING -> missing.incrementAndGet();
+                case FAILED -> failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * One run of the migration; counters are updated by the job and read by status requests.
+     */
+    private static final class Job {
+
+        private final Tally tally = new Tally();
+        private final LocalDateTime startedAt;
+        private volatile StorageMigrationStatus status;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Job() {
+            this.status = StorageMigrationStatus.RUNNING;
+            this.startedAt = LocalDateTime.now();
+        }
+
+        private Job(StorageMigrationStatus status) {
+            this.status = status;
+            this.startedAt = null;
+        }
+
+        private void finish(StorageMigrationStatus outcome, String failure) {
+            error = failure;
+            finishedAt = LocalDateTime.now();
+            status = outcome;
+        }
+
+        private StorageMigrationResponse toResponse() {
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            return StorageMigrationResponse.builder()
+                    .status(status)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .scanned(tally.scanned.get())
+                    .moved(tally.moved.get())
+                    .alreadyInPlace(tally.inPlace.get())
+                    .missing(tally.missing.get())
+                    .failed(tally.failed.get())
+                    .durationMs(startedAt == null ? 0 : Duration.between(startedAt, end).toMillis())
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ma.albaraka.bank.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.json.JsonMapper;
+import ma.albaraka.bank.domain.entity.IdempotencyRecord;
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.exception.BadRequestException;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.mapper.OperationMapper;
+import ma.albaraka.bank.repository.IdempotencyRecordRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.service.IdempotencyService;
+
+/**
+ * Remembers the response an idempotency key produced. The key row is written by the operation's
+ * own unit, right after the operation rows, so it commits or rolls back with them whichever
+ * execution strategy applies the balances. A concurrent duplicate on another instance fails on
+ * the unique key, rolls its whole unit back and replays the stored response. No transaction is
+ * held around the action, so the operation service still replays a unit aborted by a concurrent
+ * writer, key included. Recent keys also live in a bounded in-memory map that lets duplicates on
+ * this instance wait without touching the table. Failed attempts leave no key behind, so the
+ * client can retry them.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final OperationRepository operationRepository;
+    private final OperationMapper operationMapper;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long retentionHours;
+
+    public IdempotencyServiceImpl(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            OperationRepository operationRepository,
+            OperationMapper operationMapper,
+            JsonMapper jsonMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.idempotency.cache-size:10000}") int maxEntries,
+            @Value("${app.idempotency.cache-ttl-minutes:10}") long ttlMinutes,
+            @Value("${app.idempotency.retention-hours:24}") long retentionHours) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.operationRepository = operationRepository;
+        this.operationMapper = operationMapper;
+        this.jsonMapper = jsonMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.retentionHours = retentionHours;
+    }
+
+    @Override
+    public OperationResponse execute(Long userId, String idempotencyKey,
+            Function<Consumer<OperationResponse>, OperationResponse> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = userId + ":" + idempotencyKey;
+        long now = System.nanoTime();
+        Entry created = new Entry(now);
+        Entry entry = entries.compute(cacheKey,
+                (key, current) -> current == null || current.isExpired(now, ttlNanos) ? created : current);
+
+        if (entry != created) {
+            return await(entry.result);
+        }
+
+        evictIfFull();
+        try {
+            OperationResponse response = findRecorded(userId, idempotencyKey)
+                    .orElseGet(() -> executeAndRecord(userId, idempotencyKey, action));
+            created.result.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            entries.remove(cacheKey, created);
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:60000}")
+    public void purge() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now, ttlNanos));
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.debug("Purged {} idempotency records", deleted);
+        }
+    }
+
+    private OperationResponse executeAndRecord(Long userId, String idempotencyKey,
+            Function<Consumer<OperationResponse>, OperationResponse> action) {
+        try {
+            return action.apply(response -> idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                    .userId(userId)
+                    .idempotencyKey(idempotencyKey)
+                    .operationId(response.getId())
+                    .response(jsonMapper.writeValueAsString(response))
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            // Another request with the same key committed first; this attempt rolled back with its key.
+            log.debug("Idempotency key {} for user {} was claimed concurrently, replaying", idempotencyKey, userId);
+            return findRecorded(userId, idempotencyKey)
+                    .orElseThrow(() -> new BusinessRuleException("A request with this Idempotency-Key is still in progress"));
+        }
+    }
+
+    private Optional<OperationResponse> findRecorded(Long userId, String idempotencyKey) {
+        return readOnlyTransaction.execute(status ->
+                idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                        .map(this::replay));
+    }
+
+    private OperationResponse replay(IdempotencyRecord record) {
+        if (record.getResponse() != null) {
+            return jsonMapper.readValue(record.getResponse(), OperationResponse.class);
+        }
+        // Records written before responses were stored only point at the operation.
+        return operationRepository.findById(record.getOperationId())
+                .map(operationMapper::toResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Operation", "id", record.getOperationId()));
+    }
+
+    private void evictIfFull() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now, ttlNanos));
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            // Completed keys are still answered by the table, so dropping them only costs a lookup.
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private OperationResponse await(CompletableFuture<OperationResponse> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<OperationResponse> result = new CompletableFuture<>();
+        private final long createdAt;
+
+        private Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return result.isDone() && now - createdAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package ma.albaraka.bank.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.ExportFormat;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.exception.BadRequestException;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.service.OperationExportService;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Writes operations straight from a database cursor to the response. The persistence context is
+ * cleared after every chunk so memory use does not depend on the number of exported rows.
+ * Text cells of CSV exports that a spreadsheet would evaluate as a formula are prefixed with a
+ * quote, since notes and names are user input.
+ */
+@Service
+@Transactional(readOnly = true)
+public class OperationExportServiceImpl implements OperationExportService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] OPERATION_COLUMNS = {
+            "id", "type", "status", "amount", "sourceAccountNumber", "destinationAccountNumber",
+            "createdByName", "approvedByName", "createdAt", "approvedAt", "executedAt", "note"
+    };
+
+    private static final String[] STATEMENT_COLUMNS = {
+            "operationId", "executedAt", "type", "direction", "amount", "counterpartyAccountNumber",
+            "runningBalance", "note"
+    };
+
+    private final OperationRepository operationRepository;
+    private final ObjectWriter ndjsonWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public OperationExportServiceImpl(OperationRepository operationRepository, JsonMapper jsonMapper) {
+        this.operationRepository = operationRepository;
+        // Rows end with their own newline, so no separator is needed between root values.
+        this.ndjsonWriter = jsonMapper.writer().withRootValueSeparator("");
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ExportFormat resolveFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid export format: " + format);
+        }
+    }
+
+    @Override
+    public void exportOperations(ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        JsonGenerator generator = format == ExportFormat.NDJSON ? ndjsonWriter.createGenerator(writer) : null;
+        if (format == ExportFormat.CSV) {
+            writeCsvRow(writer, OPERATION_COLUMNS);
+        }
+
+        try (Stream<Operation> operations = operationRepository.streamAll()) {
+            Iterator<Operation> iterator = operations.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                Operation operation = iterator.next();
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", operation.getId());
+                row.put("type", operation.getType().name());
+                row.put("status", operation.getStatus().name());
+                row.put("amount", operation.getAmount());
+                row.put("sourceAccountNumber", accountNumber(operation.getSourceAccount()));
+                row.put("destinationAccountNumber", accountNumber(operation.getDestinationAccount()));
+                row.put("createdByName", fullName(operation.getCreatedBy()));
+                row.put("approvedByName", fullName(operation.getApprovedBy()));
+                row.put("createdAt", operation.getCreatedAt());
+                row.put("approvedAt", operation.getApprovedAt());
+                row.put("executedAt", operation.getExecutedAt());
+                row.put("note", operation.getNote());
+                writeRow(writer, generator, row);
+
+                if (++count % CHUNK_SIZE == 0) {
+                    endChunk(writer, generator);
+                }
+            }
+        }
+        flush(writer, generator);
+    }
+
+    @Override
+    public void exportAccountStatement(Long accountId, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        JsonGenerator generator = format == ExportFormat.NDJSON ? ndjsonWriter.createGenerator(writer) : null;
+        if (format == ExportFormat.CSV) {
+            writeCsvRow(writer, STATEMENT_COLUMNS);
+        }
+
+        BigDecimal runningBalance = BigDecimal.ZERO;
+        try (Stream<Operation> operations =
+                     operationRepository.streamByAccountIdAndStatus(accountId, OperationStatus.APPROVED)) {
+            Iterator<Operation> iterator = operations.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                Operation operation = iterator.next();
+                boolean credited = isAccount(operation.getDestinationAccount(), accountId);
+                boolean debited = isAccount(operation.getSourceAccount(), accountId);
+                if (credited) {
+                    runningBalance = runningBalance.add(operation.getAmount());
+                }
+                if (debited) {
+                    runningBalance = runningBalance.subtract(operation.getAmount());
+                }
+
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("operationId", operation.getId());
+                row.put("executedAt", operation.getExecutedAt());
+                row.put("type", operation.getType().name());
+                row.put("direction", credited && !debited ? "CREDIT" : "DEBIT");
+                row.put("amount", operation.getAmount());
+                row.put("counterpartyAccountNumber", accountNumber(
+                        credited ? operation.getSourceAccount() : operation.getDestinationAccount()));
+                row.put("runningBalance", runningBalance);
+                row.put("note", operation.getNote());
+                writeRow(writer, generator, row);
+
+                if (++count % CHUNK_SIZE == 0) {
+                    endChunk(writer, generator);
+                }
+            }
+        }
+        flush(writer, generator);
+    }
+
+    private void endChunk(Writer writer, JsonGenerator generator) throws IOException {
+        flush(writer, generator);
+        entityManager.clear();
+    }
+
+    private void flush(Writer writer, JsonGenerator generator) throws IOException {
+        if (generator != null) {
+            generator.flush();
+        }
+        writer.flush();
+    }
+
+    private void writeRow(Writer writer, JsonGenerator generator, Map<String, Object> row) throws IOException {
+        if (generator != null) {
+            writeJsonRow(generator, row);
+        } else {
+            writeCsvRow(writer, row.values().stream().map(this::asCsvCell).toArray(String[]::new));
+        }
+    }
+
+    private void writeCsvRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private String asCsvCell(Object value) {
+        String text = asText(value);
+        if (text == null || text.isEmpty() || value instanceof Number) {
+            return text;
+        }
+        return switch (text.charAt(0)) {
+            case '=', '+', '-', '@', '\t', '\r' -> "'" + text;
+            default -> text;
+        };
+    }
+
+    private void writeJsonRow(JsonGenerator generator, Map<String, Object> row) {
+        generator.writeStartObject();
+        for (Map.Entry<String, Object> field : row.entrySet()) {
+            generator.writeName(field.getKey());
+            Object value = field.getValue();
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof BigDecimal decimal) {
+                generator.writeNumber(decimal.toPlainString());
+            } else if (value instanceof Long number) {
+                generator.writeNumber(number);
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private String asText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return value.toString();
+    }
+
+    private boolean isAccount(Account account, Long accountId) {
+        return account != null && account.getId().equals(accountId);
+    }
+
+    private String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+
+    private String fullName(User user) {
+        return user != null ? user.getFullName() : null;
+    }
+}
@@ -1,6 +1,8 @@
 package ma.albaraka.bank.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.cache.AccountOwnershipCache;
+import ma.albaraka.bank.cache.AfterCommit;
 import ma.albaraka.bank.domain.entity.Account;
 import ma.albaraka.bank.domain.entity.Operation;
 import ma.albaraka.bank.domain.entity.User;
@@ -8,22 +10,46 @@ import ma.albaraka.bank.domain.enums.AccountStatus;
 import ma.albaraka.bank.domain.enums.OperationStatus;
 import ma.albaraka.bank.domain.enums.OperationType;
 import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.dto.response.BatchOperationItemResult;
+import ma.albaraka.bank.dto.response.BatchOperationResponse;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
 import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.dto.response.PendingOperationResponse;
 import ma.albaraka.bank.exception.BadRequestException;
 import ma.albaraka.bank.exception.BusinessRuleException;
 import ma.albaraka.bank.exception.ForbiddenException;
 import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.ledger.LedgerService;
 import ma.albaraka.bank.mapper.OperationMapper;
 import ma.albaraka.bank.repository.AccountRepository;
 import ma.albaraka.bank.repository.OperationRepository;
 import ma.albaraka.bank.repository.UserRepository;
 import ma.albaraka.bank.service.OperationService;
+import ma.albaraka.bank.service.PendingOperationService;
+import ma.albaraka.bank.service.execution.BalanceExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,46 +61,143 @@ public class OperationServiceImpl implements OperationService {
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
     private final OperationMapper operationMapper;
+    private final BalanceExecutor balanceExecutor;
+    private final LedgerService ledgerService;
+    private final AccountOwnershipCache accountOwnershipCache;
+    private final PendingOperationService pendingOperationService;
+    private final TransactionTemplate transactionTemplate;
 
     private static final BigDecimal APPROVAL_THRESHOLD = new BigDecimal("10000.00");
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int LIST_LIMIT = 1000;
+    private static final String BATCH_ITEM_CREATED = "CREATED";
+    private static final String BATCH_ITEM_FAILED = "FAILED";
+    private static final String BATCH_ITEM_SKIPPED = "SKIPPED";
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public OperationResponse createOperation(CreateOperationRequest request, Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+        return createOperation(request, userId, response -> { });
+    }
 
-        OperationType type;
-        try {
-            type = OperationType.valueOf(request.getType());
-        } catch (IllegalArgumentException e) {
-            throw new BadRequestException("Invalid operation type: " + request.getType());
-        }
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OperationResponse createOperation(CreateOperationRequest request, Long userId,
+            Consumer<OperationResponse> recorder) {
+        return unit(() -> {
+            Operation operation = transactionTemplate.execute(status -> {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+                Map<Long, Account> accounts = loadAccounts(List.of(request));
+                return prepareOperation(request, user, accounts, new HashMap<>());
+            });
+
+            if (operation.getStatus() == OperationStatus.APPROVED) {
+                List<Operation> executed = List.of(operation);
+                Runnable persist = persist(executed, executed);
+                balanceExecutor.execute(executed, () -> {
+                    persist.run();
+                    recorder.accept(operationMapper.toResponse(operation));
+                });
+                return operationMapper.toResponse(operation);
+            }
+
+            return transactionTemplate.execute(status -> {
+                Operation savedOperation = operationRepository.save(operation);
+                OperationResponse response = operationMapper.toResponse(savedOperation);
+                recorder.accept(response);
+                AfterCommit.run(() -> pendingOperationService.enqueue(response));
+                return response;
+            });
+        });
+    }
 
-        Operation operation = operationMapper.toEntity(request);
-        operation.setCreatedBy(user);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId) {
+        return createOperations(requests, userId, true);
+    }
 
-        switch (type) {
-            case DEPOSIT:
-                handleDeposit(operation, request, userId);
-                break;
-            case WITHDRAWAL:
-                handleWithdrawal(operation, request, userId);
-                break;
-            case TRANSFER:
-                handleTransfer(operation, request, userId);
-                break;
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId, boolean atomic) {
+        return unit(() -> createOperationsUnit(requests, userId, atomic));
+    }
+
+    private BatchOperationResponse createOperationsUnit(List<CreateOperationRequest> requests, Long userId,
+            boolean atomic) {
+        BatchOperationItemResult[] results = new BatchOperationItemResult[requests.size()];
+        Map<Integer, Operation> prepared = new LinkedHashMap<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+
+            Map<Long, Account> accounts = loadAccounts(requests);
+            Map<Long, BigDecimal> projectedBalances = new HashMap<>();
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    Operation operation = prepareOperation(requests.get(i), user, accounts, projectedBalances);
+                    if (operation.getStatus() == OperationStatus.APPROVED) {
+                        projectBalances(operation, projectedBalances);
+                    }
+                    prepared.put(i, operation);
+                } catch (BadRequestException | BusinessRuleException | ForbiddenException | ResourceNotFoundException e) {
+                    results[i] = batchItem(i, BATCH_ITEM_FAILED, null, e.getMessage());
+                }
+            }
+        });
+
+        if (atomic && prepared.size() < requests.size()) {
+            prepared.keySet().forEach(i -> results[i] = batchItem(i, BATCH_ITEM_SKIPPED, null, null));
+            return batchResponse(results);
         }
 
-        if (request.getAmount().compareTo(APPROVAL_THRESHOLD) <= 0) {
-            operation.setStatus(OperationStatus.APPROVED);
-            operation.setExecutedAt(LocalDateTime.now());
-            executeOperation(operation);
+        List<Operation> approved = new ArrayList<>();
+        List<Operation> held = new ArrayList<>();
+        prepared.values().forEach(operation ->
+                (operation.getStatus() == OperationStatus.APPROVED ? approved : held).add(operation));
+
+        if (atomic) {
+            // One unit for the whole batch: its balances, operation rows and postings commit together.
+            List<Operation> all = new ArrayList<>(prepared.values());
+            if (approved.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> operationRepository.saveAll(all));
+            } else {
+                balanceExecutor.execute(approved, persist(all, approved));
+            }
         } else {
-            operation.setStatus(OperationStatus.PENDING);
+            Iterator<Map.Entry<Integer, Operation>> iterator = prepared.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Operation> entry = iterator.next();
+                Operation operation = entry.getValue();
+                if (operation.getStatus() != OperationStatus.APPROVED) {
+                    continue;
+                }
+                try {
+                    List<Operation> executed = List.of(operation);
+                    balanceExecutor.execute(executed, persist(executed, executed));
+                } catch (BusinessRuleException | ResourceNotFoundException e) {
+                    results[entry.getKey()] = batchItem(entry.getKey(), BATCH_ITEM_FAILED, null, e.getMessage());
+                    iterator.remove();
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> operationRepository.saveAll(held));
         }
 
-        Operation savedOperation = operationRepository.save(operation);
-        return operationMapper.toResponse(savedOperation);
+        List<OperationResponse> pending = new ArrayList<>();
+        prepared.forEach((i, operation) -> {
+            OperationResponse response = operationMapper.toResponse(operation);
+            if (operation.getStatus() == OperationStatus.PENDING) {
+                pending.add(response);
+            }
+            results[i] = batchItem(i, BATCH_ITEM_CREATED, response, null);
+        });
+        if (!pending.isEmpty()) {
+            AfterCommit.run(() -> pending.forEach(pendingOperationService::enqueue));
+        }
+        return batchResponse(results);
     }
 
     @Override
@@ -101,7 +224,7 @@ public class OperationServiceImpl implements OperationService {
     @Override
     @Transactional(readOnly = true)
     public List<OperationResponse> getOperationsByUserId(Long userId) {
-        return operationRepository.findByCreatedById(userId).stream()
+        return operationRepository.search(userId, null, null, null, null, null, null, null, null, null, LIST_LIMIT).stream()
                 .map(operationMapper::toResponse)
                 .collect(Collectors.toList());
     }
@@ -109,75 +232,280 @@ public class OperationServiceImpl implements OperationService {
     @Override
     @Transactional(readOnly = true)
     public List<OperationResponse> getPendingOperations() {
-        return operationRepository.findByStatus(OperationStatus.PENDING).stream()
-                .map(operationMapper::toResponse)
+        return pendingOperationService.getQueue().stream()
+                .map(PendingOperationResponse::getOperation)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public OperationResponse approveOperation(Long id, Long agentId) {
-        Operation operation = operationRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Operation", "id", id));
-
-        if (operation.getStatus() != OperationStatus.PENDING) {
-            throw new BusinessRuleException("Only pending operations can be approved");
-        }
+        return unit(() -> approveOperationUnit(id, agentId));
+    }
 
-        User agent = userRepository.findById(agentId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", agentId));
+    private OperationResponse approveOperationUnit(Long id, Long agentId) {
+        Operation operation = transactionTemplate.execute(status -> {
+            Operation pending = operationRepository.findReadOnlyById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Operation", "id", id));
+            if (pending.getStatus() != OperationStatus.PENDING) {
+                throw new BusinessRuleException("Only pending operations can be approved");
+            }
+            return pending;
+        });
+        pendingOperationService.checkLease(id, agentId);
+
+        User agent = transactionTemplate.execute(status -> userRepository.findById(agentId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", agentId)));
+
+        // The status and lease checks above are only a fast path, since leases are optional and held
+        // per instance: the conditional update decides which of two concurrent approvals executes
+        // the operation, and the loser's unit rolls back unapplied.
+        LocalDateTime now = LocalDateTime.now();
+        List<Operation> executed = List.of(operation);
+        balanceExecutor.execute(executed, () -> {
+            if (operationRepository.approvePending(id, agent, now) == 0) {
+                throw new BusinessRuleException("Only pending operations can be approved");
+            }
+            ledgerService.recordPostings(executed);
+        });
 
         operation.setStatus(OperationStatus.APPROVED);
         operation.setApprovedBy(agent);
-        operation.setApprovedAt(LocalDateTime.now());
-        operation.setExecutedAt(LocalDateTime.now());
-
-        executeOperation(operation);
+        operation.setApprovedAt(now);
+        operation.setExecutedAt(now);
 
-        Operation savedOperation = operationRepository.save(operation);
-        return operationMapper.toResponse(savedOperation);
+        AfterCommit.run(() -> pendingOperationService.remove(id));
+        return operationMapper.toResponse(operation);
     }
 
     @Override
     public OperationResponse rejectOperation(Long id, Long agentId, String reason) {
-        Operation operation = operationRepository.findById(id)
+        Operation operation = operationRepository.findReadOnlyById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Operation", "id", id));
 
         if (operation.getStatus() != OperationStatus.PENDING) {
             throw new BusinessRuleException("Only pending operations can be rejected");
         }
+        pendingOperationService.checkLease(id, agentId);
 
         User agent = userRepository.findById(agentId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", agentId));
 
+        LocalDateTime now = LocalDateTime.now();
+        if (operationRepository.rejectPending(id, agent, now, reason) == 0) {
+            throw new BusinessRuleException("Only pending operations can be rejected");
+        }
+
         operation.setStatus(OperationStatus.REJECTED);
         operation.setApprovedBy(agent);
-        operation.setApprovedAt(LocalDateTime.now());
+        operation.setApprovedAt(now);
         operation.setNote(reason);
 
-        Operation savedOperation = operationRepository.save(operation);
-        return operationMapper.toResponse(savedOperation);
+        AfterCommit.run(() -> pendingOperationService.remove(id));
+        return operationMapper.toResponse(operation);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<OperationResponse> getAllOperations() {
-        return operationRepository.findAll().stream()
+        return operationRepository.search(null, null, null, null, null, null, null, null, null, null, LIST_LIMIT).stream()
                 .map(operationMapper::toResponse)
                 .collect(Collectors.toList());
     }
 
-    private void handleDeposit(Operation operation, CreateOperationRequest request, Long userId) {
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<OperationResponse> searchOperations(OperationSearchCriteria criteria, Long createdById) {
+        int limit = criteria.getLimit() == null
+                ? DEFAULT_PAGE_SIZE
+                : Math.min(Math.max(criteria.getLimit(), 1), MAX_PAGE_SIZE);
+
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (criteria.getCursor() != null && !criteria.getCursor().isBlank()) {
+            String[] cursor = decodeCursor(criteria.getCursor());
+            cursorCreatedAt = LocalDateTime.parse(cursor[0]);
+            cursorId = Long.valueOf(cursor[1]);
+        }
+
+        List<Operation> rows = operationRepository.search(
+                createdById,
+                parseEnum(OperationStatus.class, criteria.getStatus(), "status"),
+                parseEnum(OperationType.class, criteria.getType(), "operation type"),
+                criteria.getAccountId(),
+                criteria.getMinAmount(),
+                criteria.getMaxAmount(),
+                criteria.getFrom(),
+                criteria.getTo(),
+                cursorCreatedAt,
+                cursorId,
+                limit + 1);
+
+        boolean hasMore = rows.size() > limit;
+        List<Operation> page = hasMore ? rows.subList(0, limit) : rows;
+
+        return CursorPageResponse.<OperationResponse>builder()
+                .items(page.stream()
+                        .map(operationMapper::toResponse)
+                        .collect(Collectors.toList()))
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Runs a balance-changing call. The JPA executor applies balances in the caller's transaction,
+     * so the whole call is one transaction. The sharded executor commits in the shard's own, so the
+     * call holds none while it waits and only its reads and writes open short ones; otherwise every
+     * waiting caller would pin a pooled connection the shards need to make progress.
+     */
+    private <T> T unit(Supplier<T> body) {
+        if (!balanceExecutor.usesCallerTransaction()) {
+            return body.get();
+        }
+        return transactionTemplate.execute(status -> body.get());
+    }
+
+    private String encodeCursor(Operation operation) {
+        String cursor = operation.getCreatedAt() + "|" + operation.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.valueOf(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private <E extends Enum<E>> E parseEnum(Class<E> enumType, String value, String label) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(enumType, value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid " + label + ": " + value);
+        }
+    }
+
+    private Operation prepareOperation(CreateOperationRequest request, User user,
+            Map<Long, Account> accounts, Map<Long, BigDecimal> projectedBalances) {
+        OperationType type;
+        try {
+            type = OperationType.valueOf(request.getType());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid operation type: " + request.getType());
+        }
+
+        Operation operation = operationMapper.toEntity(request);
+        operation.setCreatedBy(user);
+
+        switch (type) {
+            case DEPOSIT:
+                handleDeposit(operation, request, user.getId(), accounts);
+                break;
+            case WITHDRAWAL:
+                handleWithdrawal(operation, request, user.getId(), accounts, projectedBalances);
+                break;
+            case TRANSFER:
+                handleTransfer(operation, request, user.getId(), accounts, projectedBalances);
+                break;
+        }
+
+        if (request.getAmount().compareTo(APPROVAL_THRESHOLD) <= 0) {
+            operation.setStatus(OperationStatus.APPROVED);
+            operation.setExecutedAt(LocalDateTime.now());
+        } else {
+            operation.setStatus(OperationStatus.PENDING);
+        }
+        return operation;
+    }
+
+    private Map<Long, Account> loadAccounts(List<CreateOperationRequest> requests) {
+        Set<Long> accountIds = new HashSet<>();
+        for (CreateOperationRequest request : requests) {
+            if (request.getSourceAccountId() != null) {
+                accountIds.add(request.getSourceAccountId());
+            }
+            if (request.getDestinationAccountId() != null) {
+                accountIds.add(request.getDestinationAccountId());
+            }
+        }
+        return accountRepository.findAllById(accountIds).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+    }
+
+    private Account findAccount(Map<Long, Account> accounts, Long accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            throw new ResourceNotFoundException("Account", "id", accountId);
+        }
+        return account;
+    }
+
+    private BigDecimal availableBalance(Account account, Map<Long, BigDecimal> projectedBalances) {
+        return projectedBalances.getOrDefault(account.getId(), account.getBalance());
+    }
+
+    private void projectBalances(Operation operation, Map<Long, BigDecimal> projectedBalances) {
+        if (operation.getSourceAccount() != null) {
+            Account source = operation.getSourceAccount();
+            projectedBalances.put(source.getId(),
+                    availableBalance(source, projectedBalances).subtract(operation.getAmount()));
+        }
+        if (operation.getDestinationAccount() != null) {
+            Account destination = operation.getDestinationAccount();
+            projectedBalances.put(destination.getId(),
+                    availableBalance(destination, projectedBalances).add(operation.getAmount()));
+        }
+    }
+
+    private BatchOperationItemResult batchItem(int index, String status, OperationResponse operation, String error) {
+        return BatchOperationItemResult.builder()
+                .index(index)
+                .status(status)
+                .operation(operation)
+                .error(error)
+                .build();
+    }
+
+    private BatchOperationResponse batchResponse(BatchOperationItemResult[] results) {
+        int created = 0;
+        int failed = 0;
+        for (BatchOperationItemResult result : results) {
+            if (BATCH_ITEM_CREATED.equals(result.getStatus())) {
+                created++;
+            } else if (BATCH_ITEM_FAILED.equals(result.getStatus())) {
+                failed++;
+            }
+        }
+        return BatchOperationResponse.builder()
+                .created(created)
+                .failed(failed)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private void handleDeposit(Operation operation, CreateOperationRequest request, Long userId,
+            Map<Long, Account> accounts) {
         if (request.getDestinationAccountId() == null) {
             throw new BadRequestException("Destination account is required for deposit");
         }
 
-        Account destinationAccount = accountRepository.findById(request.getDestinationAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "id", request.getDestinationAccountId()));
-
-        if (!destinationAccount.getOwner().getId().equals(userId)) {
+        if (!accountOwnershipCache.isOwnedBy(request.getDestinationAccountId(), userId)) {
             throw new ForbiddenException("You can only deposit to your own accounts");
         }
 
+        Account destinationAccount = findAccount(accounts, request.getDestinationAccountId());
+
         if (destinationAccount.getStatus() != AccountStatus.ACTIVE) {
             throw new BusinessRuleException("Destination account is not active");
         }
@@ -185,44 +513,43 @@ public class OperationServiceImpl implements OperationService {
         operation.setDestinationAccount(destinationAccount);
     }
 
-    private void handleWithdrawal(Operation operation, CreateOperationRequest request, Long userId) {
+    private void handleWithdrawal(Operation operation, CreateOperationRequest request, Long userId,
+            Map<Long, Account> accounts, Map<Long, BigDecimal> projectedBalances) {
         if (request.getSourceAccountId() == null) {
             throw new BadRequestException("Source account is required for withdrawal");
         }
 
-        Account sourceAccount = accountRepository.findById(request.getSourceAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "id", request.getSourceAccountId()));
-
-        if (!sourceAccount.getOwner().getId().equals(userId)) {
+        if (!accountOwnershipCache.isOwnedBy(request.getSourceAccountId(), userId)) {
             throw new ForbiddenException("You can only withdraw from your own accounts");
         }
 
+        Account sourceAccount = findAccount(accounts, request.getSourceAccountId());
+
         if (sourceAccount.getStatus() != AccountStatus.ACTIVE) {
             throw new BusinessRuleException("Source account is not active");
         }
 
-        if (sourceAccount.getBalance().compareTo(request.getAmount()) < 0) {
+        if (availableBalance(sourceAccount, projectedBalances).compareTo(request.getAmount()) < 0) {
             throw new BusinessRuleException("Insufficient balance");
         }
 
         operation.setSourceAccount(sourceAccount);
     }
 
-    private void handleTransfer(Operation operation, CreateOperationRequest request, Long userId) {
+    private void handleTransfer(Operation operation, CreateOperationRequest request, Long userId,
+            Map<Long, Account> accounts, Map<Long, BigDecimal> projectedBalances) {
         if (request.getSourceAccountId() == null || request.getDestinationAccountId() == null) {
             throw new BadRequestException("Both source and destination accounts are required for transfer");
         }
 
-        Account sourceAccount = accountRepository.findById(request.getSourceAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "id", request.getSourceAccountId()));
-
-        Account destinationAccount = accountRepository.findById(request.getDestinationAccountId())
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "id", request.getDestinationAccountId()));
-
-        if (!sourceAccount.getOwner().getId().equals(userId)) {
+        if (!accountOwnershipCache.isOwnedBy(request.getSourceAccountId(), userId)) {
             throw new ForbiddenException("You can only transfer from your own accounts");
         }
 
+        Account sourceAccount = findAccount(accounts, request.getSourceAccountId());
+
+        Account destinationAccount = findAccount(accounts, request.getDestinationAccountId());
+
         if (sourceAccount.getStatus() != AccountStatus.ACTIVE) {
             throw new BusinessRuleException("Source account is not active");
         }
@@ -231,7 +558,7 @@ public class OperationServiceImpl implements OperationService {
             throw new BusinessRuleException("Destination account is not active");
         }
 
-        if (sourceAccount.getBalance().compareTo(request.getAmount()) < 0) {
+        if (availableBalance(sourceAccount, projectedBalances).compareTo(request.getAmount()) < 0) {
             throw new BusinessRuleException("Insufficient balance");
         }
 
@@ -239,28 +566,15 @@ public class OperationServiceImpl implements OperationService {
         operation.setDestinationAccount(destinationAccount);
     }
 
-    private void executeOperation(Operation operation) {
-        switch (operation.getType()) {
-            case DEPOSIT:
-                Account destinationAccount = operation.getDestinationAccount();
-                destinationAccount.setBalance(destinationAccount.getBalance().add(operation.getAmount()));
-                accountRepository.save(destinationAccount);
-                break;
-
-            case WITHDRAWAL:
-                Account sourceAccount = operation.getSourceAccount();
-                sourceAccount.setBalance(sourceAccount.getBalance().subtract(operation.getAmount()));
-                accountRepository.save(sourceAccount);
-                break;
-
-            case TRANSFER:
-                Account source = operation.getSourceAccount();
-                Account destination = operation.getDestinationAccount();
-                source.setBalance(source.getBalance().subtract(operation.getAmount()));
-                destination.setBalance(destination.getBalance().add(operation.getAmount()));
-                accountRepository.save(source);
-                accountRepository.save(destination);
-                break;
-        }
+    /**
+     * Writes new operations together with the ledger postings of the executed ones. The ids are
+     * cleared first because an attempt that was rolled back may already have assigned them.
+     */
+    private Runnable persist(List<Operation> operations, List<Operation> executed) {
+        return () -> {
+            operations.forEach(operation -> operation.setId(null));
+            operationRepository.saveAll(operations);
+            ledgerService.recordPostings(executed);
+        };
     }
 }
@@ -0,0 +1,421 @@
+package ma.albaraka.bank.service.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.dto.response.PendingOperationResponse;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.mapper.OperationMapper;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.service.PendingOperationService;
+
+/**
+ * Keeps the operations awaiting approval in memory, largest amount first and oldest first among
+ * equal amounts, so agents no longer query the operations table on every poll. Agents claim an
+ * operation with a lease that expires after {@code app.operations.queue.lease-seconds}; while it
+ * is live no other agent may decide the operation, and deciding it drops the lease along with the
+ * entry. Claiming is optional, so clients that decide straight from the list keep working. Leases
+ * live in this instance's memory; the conditional status update behind approval and rejection is
+ * what guarantees a single decision across instances.
+ * <p>
+ * Every change is pushed to subscribers over server-sent events. Each subscriber has its own
+ * bounded buffer drained on a pool thread, so a slow client never delays the others; a client
+ * whose buffer overflows is disconnected and gets a fresh snapshot when it reconnects.
+ * <p>
+ * The queue is loaded from the database once the application is ready and reconciled with it
+ * periodically, which also picks up operations created by other instances. Changes made while a
+ * reload is running are kept.
+ */
+@Slf4j
+@Service
+public class PendingOperationServiceImpl implements PendingOperationService, DisposableBean {
+
+    private static final Comparator<Entry> PRIORITY = Comparator
+            .comparing((Entry entry) -> entry.amount, Comparator.reverseOrder())
+            .thenComparing(entry -> entry.operation.getCreatedAt(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(entry -> entry.operation.getId());
+
+    private final OperationRepository operationRepository;
+    private final OperationMapper operationMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long leaseSeconds;
+    private final long sseTimeoutMs;
+    private final int sseBufferEvents;
+
+    private final TreeSet<Entry> ordered = new TreeSet<>(PRIORITY);
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Long> removedAt = new HashMap<>();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger senderCount = new AtomicInteger();
+    // At most one send per subscriber at a time, so the pool does not grow past the number of subscribers.
+    private final ExecutorService sender = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "pending-operation-events-" + senderCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PendingOperationServiceImpl(
+            OperationRepository operationRepository,
+            OperationMapper operationMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.operations.queue.lease-seconds:300}") long leaseSeconds,
+            @Value("${app.operations.queue.sse-timeout-ms:1800000}") long sseTimeoutMs,
+            @Value("${app.operations.queue.sse-buffer-events:256}") int sseBufferEvents) {
+        this.operationRepository = operationRepository;
+        this.operationMapper = operationMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.leaseSeconds = leaseSeconds;
+        this.sseTimeoutMs = sseTimeoutMs;
+        this.sseBufferEvents = Math.max(1, sseBufferEvents);
+
+        Gauge.builder("operations.pending.queue.size", this, PendingOperationServiceImpl::size)
+                .description("Operations awaiting approval")
+                .register(meterRegistry);
+        Gauge.builder("operations.pending.subscribers", subscribers, List::size)
+                .description("Agents subscribed to pending operation events")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.operations.queue.resync-interval-ms:300000}",
+            initialDelayString = "${app.operations.queue.resync-interval-ms:300000}")
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<OperationResponse> pending = transactionTemplate.execute(status ->
+                operationRepository.findByStatus(OperationStatus.PENDING).stream()
+                        .map(operationMapper::toResponse)
+                        .toList());
+
+        synchronized (this) {
+            Map<Long, Entry> loaded = new HashMap<>();
+            for (OperationResponse operation : pending) {
+                Long removed = removedAt.get(operation.getId());
+                if (removed != null && removed >= start) {
+                    continue;
+                }
+                Entry entry = new Entry(operation, start);
+                Entry existing = entries.get(operation.getId());
+                if (existing != null) {
+                    entry.claimedById = existing.claimedById;
+                    entry.claimedUntil = existing.claimedUntil;
+                }
+                loaded.put(operation.getId(), entry);
+            }
+            for (Entry entry : entries.values()) {
+                if (entry.enqueuedAt >= start) {
+                    loaded.putIfAbsent(entry.operation.getId(), entry);
+                }
+            }
+
+            entries.clear();
+            entries.putAll(loaded);
+            ordered.clear();
+            ordered.addAll(loaded.values());
+            removedAt.values().removeIf(removed -> removed < start);
+        }
+        log.debug("Reloaded {} pending operations", pending.size());
+    }
+
+    @Override
+    public synchronized List<PendingOperationResponse> getQueue() {
+        List<PendingOperationResponse> queue = new ArrayList<>(ordered.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Entry entry : ordered) {
+            queue.add(entry.toResponse(now));
+        }
+        return queue;
+    }
+
+    @Override
+    public synchronized PendingOperationResponse claimNext(Long agentId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Entry entry : ordered) {
+            if (!entry.isClaimed(now)) {
+                entry.claim(agentId, now.plusSeconds(leaseSeconds));
+                PendingOperationResponse claimed = entry.toResponse(now);
+                broadcast("claimed", claimed);
+                return claimed;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public PendingOperationResponse claim(Long operationId, Long agentId) {
+        if (!contains(operationId)) {
+            // Created on another instance since the last reload.
+            loadPending(operationId);
+        }
+        synchronized (this) {
+            Entry entry = entries.get(operationId);
+            if (entry == null) {
+                throw new ResourceNotFoundException("Pending operation", "id", operationId);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            ensureNotClaimedByOther(entry, agentId, now);
+            entry.claim(agentId, now.plusSeconds(leaseSeconds));
+            PendingOperationResponse claimed = entry.toResponse(now);
+            broadcast("claimed", claimed);
+            return claimed;
+        }
+    }
+
+    @Override
+    public synchronized void release(Long operationId, Long agentId) {
+        Entry entry = entries.get(operationId);
+        LocalDateTime now = LocalDateTime.now();
+        if (entry == null || !entry.isClaimed(now)) {
+            return;
+        }
+        ensureNotClaimedByOther(entry, agentId, now);
+        entry.release();
+        broadcast("released", entry.toResponse(now));
+    }
+
+    @Override
+    public synchronized void checkLease(Long operationId, Long agentId) {
+        Entry entry = entries.get(operationId);
+        if (entry != null) {
+            ensureNotClaimedByOther(entry, agentId, LocalDateTime.now());
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        // Under the queue lock, so no event can slip in between the snapshot and the subscription.
+        synchronized (this) {
+            subscriber.offer(new Event("snapshot", getQueue()));
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    @Override
+    public synchronized void enqueue(OperationResponse operation) {
+        if (entries.containsKey(operation.getId())) {
+            return;
+        }
+        Entry entry = new Entry(operation, System.currentTimeMillis());
+        entries.put(operation.getId(), entry);
+        ordered.add(entry);
+        broadcast("added", entry.toResponse(LocalDateTime.now()));
+    }
+
+    @Override
+    public synchronized void remove(Long operationId) {
+        removedAt.put(operationId, System.currentTimeMillis());
+        Entry entry = entries.remove(operationId);
+        if (entry == null) {
+            return;
+        }
+        ordered.remove(entry);
+        broadcast("removed", entry.toResponse(LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.operations.queue.lease-check-interval-ms:5000}")
+    public synchronized void expireLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Entry entry : ordered) {
+            if (entry.claimedById != null && !entry.isClaimed(now)) {
+                entry.release();
+                broadcast("released", entry.toResponse(now));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized boolean contains(Long operationId) {
+        return entries.containsKey(operationId);
+    }
+
+    private void loadPending(Long operationId) {
+        long start = System.currentTimeMillis();
+        OperationResponse operation = transactionTemplate.execute(status ->
+                operationRepository.findReadOnlyById(operationId)
+                        .filter(found -> found.getStatus() == OperationStatus.PENDING)
+                        .map(operationMapper::toResponse)
+                        .orElse(null));
+        if (operation == null) {
+            return;
+        }
+        synchronized (this) {
+            Long removed = removedAt.get(operationId);
+            // Decided while it was being loaded.
+            if (removed == null || removed < start) {
+                enqueue(operation);
+            }
+        }
+    }
+
+    private void ensureNotClaimedByOther(Entry entry, Long agentId, LocalDateTime now) {
+        if (entry.isClaimed(now) && !entry.claimedById.equals(agentId)) {
+            throw new BusinessRuleException("Operation " + entry.operation.getId()
+                    + " is claimed by another agent until " + entry.claimedUntil);
+        }
+    }
+
+    /**
+     * Queues the event for every subscriber; called with the queue lock held so subscribers see
+     * events in the order the changes were made. Never blocks on a client.
+     */
+    private void broadcast(String name, PendingOperationResponse item) {
+        Event event = new Event(name, item);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    private static final class Event {
+
+        private final String name;
+        private final Object data;
+
+        private Event(String name, Object data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Buffers the events of one client; at most one pool thread sends them at a time.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> events = new ArrayBlockingQueue<>(sseBufferEvents);
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Event event) {
+            if (!events.offer(event)) {
+                log.debug("Disconnecting a pending operation subscriber that fell {} events behind", sseBufferEvents);
+                subscribers.remove(this);
+                // Completing waits for a send in progress, so it must not run under the queue lock.
+                execute(emitter::complete);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                execute(this::send);
+            }
+        }
+
+        private void execute(Runnable task) {
+            try {
+                sender.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Shutting down.
+            }
+        }
+
+        private void send() {
+            try {
+                Event event;
+                while ((event = events.poll()) != null) {
+                    emitter.send(SseEmitter.event().name(event.name).data(event.data));
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                return;
+            }
+            sending.set(false);
+            // An event offered after the last poll but before the flag was cleared.
+            if (!events.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final OperationResponse operation;
+        private final BigDecimal amount;
+        private final long enqueuedAt;
+        private Long claimedById;
+        private LocalDateTime claimedUntil;
+
+        private Entry(OperationResponse operation, long enqueuedAt) {
+            this.operation = operation;
+            this.amount = operation.getAmount() != null ? new BigDecimal(operation.getAmount()) : BigDecimal.ZERO;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        private boolean isClaimed(LocalDateTime now) {
+            return claimedById != null && claimedUntil.isAfter(now);
+        }
+
+        private void claim(Long agentId, LocalDateTime until) {
+            claimedById = agentId;
+            claimedUntil = until;
+        }
+
+        private void release() {
+            claimedById = null;
+            claimedUntil = null;
+        }
+
+        private PendingOperationResponse toResponse(LocalDateTime now) {
+            boolean claimed = isClaimed(now);
+            return PendingOperationResponse.builder()
+                    .operation(operation)
+                    .claimedById(claimed ? claimedById : null)
+                    .claimedUntil(claimed ? claimedUntil : null)
+                    .build();
+        }
+    }
+}
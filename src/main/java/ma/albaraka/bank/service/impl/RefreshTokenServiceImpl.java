@@ -0,0 +1,128 @@
+package ma.albaraka.bank.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.cache.AfterCommit;
+import ma.albaraka.bank.domain.entity.RefreshToken;
+import ma.albaraka.bank.exception.UnauthorizedException;
+import ma.albaraka.bank.repository.RefreshTokenRepository;
+import ma.albaraka.bank.service.RefreshTokenService;
+
+/**
+ * Opaque refresh tokens stored as SHA-256 hashes. Every refresh revokes the presented token and
+ * issues the next one of the same family; presenting a revoked token means it leaked, so the
+ * whole family is revoked. Recently issued tokens are kept in memory to skip the lookup query.
+ */
+@Slf4j
+@Service
+@Transactional
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Cache<String, RefreshToken> hotTokens;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long ttlDays;
+
+    public RefreshTokenServiceImpl(
+            RefreshTokenRepository refreshTokenRepository,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.refresh-expiration-days:30}") long ttlDays,
+            @Value("${app.cache.refresh-tokens.max-size:10000}") long hotSetSize) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.ttlDays = ttlDays;
+        this.hotTokens = Caffeine.newBuilder()
+                .maximumSize(hotSetSize)
+                .expireAfterWrite(Duration.ofDays(ttlDays))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hotTokens, "refreshTokens");
+    }
+
+    @Override
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .userId(userId)
+                .expiresAt(LocalDateTime.now().plusDays(ttlDays))
+                .build());
+        AfterCommit.run(() -> hotTokens.put(token.getTokenHash(), token));
+        return rawToken;
+    }
+
+    @Override
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public RefreshToken consume(String rawToken) {
+        String tokenHash = hash(rawToken);
+        RefreshToken token = hotTokens.getIfPresent(tokenHash);
+        if (token == null) {
+            token = refreshTokenRepository.findByTokenHash(tokenHash)
+                    .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (token.getExpiresAt().isBefore(now)) {
+            hotTokens.invalidate(tokenHash);
+            throw new UnauthorizedException("Refresh token has expired");
+        }
+
+        if (refreshTokenRepository.revoke(token.getId(), now) == 0) {
+            String familyId = token.getFamilyId();
+            int revoked = refreshTokenRepository.revokeFamily(familyId, now);
+            hotTokens.asMap().values().removeIf(hot -> hot.getFamilyId().equals(familyId));
+            log.warn("Reuse of refresh token detected for user {}, revoked {} tokens of its family",
+                    token.getUserId(), revoked);
+            throw new UnauthorizedException("Refresh token has been revoked");
+        }
+
+        hotTokens.invalidate(tokenHash);
+        return token;
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh-tokens.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpiredBefore(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    private String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
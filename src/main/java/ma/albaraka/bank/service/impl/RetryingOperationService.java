@@ -0,0 +1,163 @@
+package ma.albaraka.bank.service.impl;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.dto.response.BatchOperationResponse;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.service.OperationService;
+
+/**
+ * Runs balance-changing operations in their own transaction and replays them when the database
+ * aborts that transaction because of a concurrent writer: a deadlock, a lock wait timeout or a
+ * stale entity version. Balances move through conditional updates that never raise a version
+ * conflict, so in practice the retries cover lock contention on hot account rows. Every one of
+ * these failures rolls the whole attempt back, which is what makes the replay safe.
+ */
+@Slf4j
+@Service
+@Primary
+public class RetryingOperationService implements OperationService {
+
+    private final OperationServiceImpl delegate;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Counter conflictCounter;
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
+
+    public RetryingOperationService(
+            OperationServiceImpl delegate,
+            MeterRegistry meterRegistry,
+            @Value("${app.operations.retry.max-attempts:5}") int maxAttempts,
+            @Value("${app.operations.retry.initial-backoff-ms:20}") long initialBackoffMs,
+            @Value("${app.operations.retry.max-backoff-ms:500}") long maxBackoffMs) {
+        this.delegate = delegate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.conflictCounter = Counter.builder("operations.concurrency.conflicts")
+                .description("Operation transactions aborted by a concurrent writer")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("operations.concurrency.retries")
+                .description("Operations replayed after a concurrency conflict")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("operations.concurrency.exhausted")
+                .description("Operations abandoned after exhausting their retries")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public OperationResponse createOperation(CreateOperationRequest request, Long userId) {
+        return withRetry(() -> delegate.createOperation(request, userId));
+    }
+
+    @Override
+    public OperationResponse createOperation(CreateOperationRequest request, Long userId,
+            Consumer<OperationResponse> recorder) {
+        return withRetry(() -> delegate.createOperation(request, userId, recorder));
+    }
+
+    @Override
+    public BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId) {
+        return withRetry(() -> delegate.createOperations(requests, userId));
+    }
+
+    @Override
+    public BatchOperationResponse createOperations(List<CreateOperationRequest> requests, Long userId, boolean atomic) {
+        return withRetry(() -> delegate.createOperations(requests, userId, atomic));
+    }
+
+    @Override
+    public OperationResponse getOperationById(Long id) {
+        return delegate.getOperationById(id);
+    }
+
+    @Override
+    public OperationResponse getOperationById(Long id, Long userId) {
+        return delegate.getOperationById(id, userId);
+    }
+
+    @Override
+    public List<OperationResponse> getOperationsByUserId(Long userId) {
+        return delegate.getOperationsByUserId(userId);
+    }
+
+    @Override
+    public List<OperationResponse> getPendingOperations() {
+        return delegate.getPendingOperations();
+    }
+
+    @Override
+    public OperationResponse approveOperation(Long id, Long agentId) {
+        return withRetry(() -> delegate.approveOperation(id, agentId));
+    }
+
+    @Override
+    public OperationResponse rejectOperation(Long id, Long agentId, String reason) {
+        return withRetry(() -> delegate.rejectOperation(id, agentId, reason));
+    }
+
+    @Override
+    public List<OperationResponse> getAllOperations() {
+        return delegate.getAllOperations();
+    }
+
+    @Override
+    public CursorPageResponse<OperationResponse> searchOperations(OperationSearchCriteria criteria, Long createdById) {
+        return delegate.searchOperations(criteria, createdById);
+    }
+
+    private <T> T withRetry(Supplier<T> action) {
+        // Inside a caller's transaction the abort belongs to the caller, so replaying here is pointless.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+
+        long backoff = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException | OptimisticLockException | PessimisticLockException
+                    | LockTimeoutException e) {
+                conflictCounter.increment();
+                if (attempt >= maxAttempts) {
+                    exhaustedCounter.increment();
+                    log.warn("Giving up after {} attempts on concurrent account update: {}", attempt, e.getMessage());
+                    throw new BusinessRuleException("Account was modified concurrently, please retry");
+                }
+                retryCounter.increment();
+                sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessRuleException("Operation interrupted while waiting to retry");
+        }
+    }
+}
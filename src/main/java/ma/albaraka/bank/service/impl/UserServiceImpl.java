@@ -5,9 +5,12 @@ import java.util.stream.Collectors;
 
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import lombok.RequiredArgsConstructor;
+import ma.albaraka.bank.cache.UserDetailsCache;
 import ma.albaraka.bank.domain.entity.User;
 import ma.albaraka.bank.domain.enums.Role;
 import ma.albaraka.bank.dto.request.CreateUserRequest;
@@ -17,6 +20,7 @@ import ma.albaraka.bank.exception.BadRequestException;
 import ma.albaraka.bank.exception.ResourceNotFoundException;
 import ma.albaraka.bank.mapper.UserMapper;
 import ma.albaraka.bank.repository.UserRepository;
+import ma.albaraka.bank.security.UserAccessCache;
 import ma.albaraka.bank.service.UserService;
 
 @Service
@@ -27,11 +31,16 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
-
-
-
-
+    private final UserAccessCache userAccessCache;
+    private final UserDetailsCache userDetailsCache;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Hashes the password before the transaction opens, so waiting for the bounded hashing pool
+     * never holds a database connection.
+     */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public UserResponse createUser(CreateUserRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new BadRequestException("Email already exists: " + request.getEmail());
@@ -43,12 +52,20 @@ public class UserServiceImpl implements UserService {
             throw new BadRequestException("Invalid role: " + request.getRole());
         }
 
-        User user = userMapper.toEntity(request);
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setActive(true);
+        String encodedPassword = passwordEncoder.encode(request.getPassword());
+
+        return transactionTemplate.execute(status -> {
+            if (userRepository.existsByEmail(request.getEmail())) {
+                throw new BadRequestException("Email already exists: " + request.getEmail());
+            }
 
-        User savedUser = userRepository.save(user);
-        return userMapper.toResponse(savedUser);
+            User user = userMapper.toEntity(request);
+            user.setPassword(encodedPassword);
+            user.setActive(true);
+
+            User savedUser = userRepository.save(user);
+            return userMapper.toResponse(savedUser);
+        });
     }
 
     @Override
@@ -85,6 +102,7 @@ public class UserServiceImpl implements UserService {
         }
         if (request.getActive() != null) {
             user.setActive(request.getActive());
+            evictCaches(user);
         }
 
         User updatedUser = userRepository.save(user);
@@ -93,10 +111,10 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User", "id", id);
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
+        userRepository.delete(user);
+        evictCaches(user);
     }
 
     @Override
@@ -105,6 +123,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         user.setActive(true);
         userRepository.save(user);
+        evictCaches(user);
     }
 
     @Override
@@ -113,6 +132,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         user.setActive(false);
         userRepository.save(user);
+        evictCaches(user);
     }
 
     @Override
@@ -128,6 +148,12 @@ public class UserServiceImpl implements UserService {
         }
 
         User updatedUser = userRepository.save(user);
+        evictCaches(user);
         return userMapper.toResponse(updatedUser);
     }
+
+    private void evictCaches(User user) {
+        userAccessCache.evict(user.getId());
+        userDetailsCache.evict(user.getEmail());
+    }
 }
@@ -0,0 +1,215 @@
+package ma.albaraka.bank.service.processing;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.enums.DocumentProcessingStatus;
+import ma.albaraka.bank.dto.response.DocumentContent;
+import ma.albaraka.bank.exception.ResourceNotFoundException;
+import ma.albaraka.bank.repository.DocumentRepository;
+import ma.albaraka.bank.service.DocumentService;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+
+/**
+ * Post-processes uploaded documents on a few background workers fed by a bounded queue, so uploads
+ * only pay for the durable write. A document is queued once its upload commits; when the queue is
+ * full it simply stays PENDING and a periodic sweep queues it again later, which also picks up
+ * documents left behind by a restart. Failures are retried with exponential backoff before the
+ * document is marked FAILED.
+ */
+@Slf4j
+@Component
+public class DocumentProcessingPipeline implements DisposableBean {
+
+    private static final long SWEEP_MIN_AGE_SECONDS = 60;
+
+    private final DocumentService documentService;
+    private final DocumentRepository documentRepository;
+    private final DocumentStorage documentStorage;
+    private final DocumentProcessor documentProcessor;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+
+    private final BlockingQueue<Long> queue;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final Timer duration;
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter retries;
+    private final Counter rejected;
+
+    public DocumentProcessingPipeline(
+            DocumentService documentService,
+            DocumentRepository documentRepository,
+            DocumentStorage documentStorage,
+            DocumentProcessor documentProcessor,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.documents.processing.workers:2}") int workerCount,
+            @Value("${app.documents.processing.queue-capacity:1000}") int queueCapacity,
+            @Value("${app.documents.processing.max-attempts:3}") int maxAttempts,
+            @Value("${app.documents.processing.retry-backoff-ms:1000}") long retryBackoffMs) {
+        this.documentService = documentService;
+        this.documentRepository = documentRepository;
+        this.documentStorage = documentStorage;
+        this.documentProcessor = documentProcessor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.duration = Timer.builder("documents.processing.duration")
+                .description("Time spent processing one document, including retries")
+                .register(meterRegistry);
+        this.completed = Counter.builder("documents.processing.completed")
+                .description("Documents processed successfully")
+                .register(meterRegistry);
+        this.failed = Counter.builder("documents.processing.failed")
+                .description("Documents marked FAILED after their last attempt")
+                .register(meterRegistry);
+        this.retries = Counter.builder("documents.processing.retries")
+                .description("Processing attempts that failed and were retried")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("documents.processing.rejected")
+                .description("Documents left for the sweep because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("documents.processing.queue.depth", queue, BlockingQueue::size)
+                .description("Documents waiting for a processing worker")
+                .register(meterRegistry);
+
+        for (int i = 1; i <= Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::work, "document-processing-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onDocumentUploaded(DocumentUploadedEvent event) {
+        submit(event.getDocumentId());
+    }
+
+    @Scheduled(fixedDelayString = "${app.documents.processing.sweep-interval-ms:60000}")
+    public void requeuePending() {
+        int capacity = queue.remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        // Recent uploads are skipped, their own event is still on its way.
+        List<Long> pending = documentRepository.findIdsByProcessingStatusUploadedBefore(
+                DocumentProcessingStatus.PENDING,
+                LocalDateTime.now().minusSeconds(SWEEP_MIN_AGE_SECONDS),
+                PageRequest.of(0, capacity));
+        pending.forEach(this::submit);
+    }
+
+    public void submit(Long documentId) {
+        if (!queued.add(documentId)) {
+            return;
+        }
+        if (!queue.offer(documentId)) {
+            queued.remove(documentId);
+            rejected.increment();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (running) {
+            Long documentId;
+            try {
+                documentId = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (documentId == null) {
+                continue;
+            }
+            try {
+                duration.record(() -> processWithRetries(documentId));
+            } finally {
+                queued.remove(documentId);
+            }
+        }
+    }
+
+    private void processWithRetries(Long documentId) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                process(documentId);
+                completed.increment();
+                return;
+            } catch (ResourceNotFoundException e) {
+                // Deleted since it was queued, or its content is gone; only the latter still has a row to mark.
+                transactionTemplate.executeWithoutResult(status -> documentRepository.recordProcessing(
+                        documentId, DocumentProcessingStatus.FAILED, null, null));
+                return;
+            } catch (Exception e) {
+                if (attempt == maxAttempts) {
+                    log.warn("Processing of document {} failed after {} attempts: {}", documentId, attempt, e.getMessage());
+                    transactionTemplate.executeWithoutResult(status -> documentRepository.recordProcessing(
+                            documentId, DocumentProcessingStatus.FAILED, null, null));
+                    failed.increment();
+                    return;
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(retryBackoffMs << (attempt - 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(Long documentId) throws Exception {
+        DocumentContent content = documentService.getDocumentContent(documentId);
+        DocumentProcessor.Result result = documentProcessor.process(content.getFileType(), content.getResource());
+
+        String thumbnailPath = null;
+        byte[] thumbnail = result.getThumbnail();
+        if (thumbnail != null) {
+            thumbnailPath = documentStorage.write("thumbnail-" + documentId + ".png",
+                    new ByteArrayInputStream(thumbnail), thumbnail.length);
+        }
+
+        String storedThumbnail = thumbnailPath;
+        Integer updated = transactionTemplate.execute(status -> documentRepository.recordProcessing(
+                documentId, DocumentProcessingStatus.COMPLETED, result.getPageCount(), storedThumbnail));
+        if (updated != null && updated == 0 && thumbnailPath != null) {
+            documentStorage.delete(thumbnailPath);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ma.albaraka.bank.service.processing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import ma.albaraka.bank.domain.enums.DocumentType;
+
+/**
+ * Derives what agents need to review a document: the page count of a PDF and a PNG thumbnail of
+ * an image or of the first PDF page. Images are subsampled while decoding, so a huge picture is
+ * never fully expanded in memory.
+ */
+@Component
+public class DocumentProcessor {
+
+    private static final float PDF_RENDER_DPI = 36;
+
+    private final int thumbnailSize;
+
+    public DocumentProcessor(@Value("${app.documents.processing.thumbnail-size:256}") int thumbnailSize) {
+        this.thumbnailSize = Math.max(16, thumbnailSize);
+    }
+
+    public Result process(DocumentType type, Resource content) throws IOException {
+        try (InputStream in = content.getInputStream()) {
+            if (type == DocumentType.PDF) {
+                try (PDDocument pdf = Loader.loadPDF(new RandomAccessReadBuffer(in))) {
+                    int pageCount = pdf.getNumberOfPages();
+                    byte[] thumbnail = pageCount > 0
+                            ? thumbnail(new PDFRenderer(pdf).renderImageWithDPI(0, PDF_RENDER_DPI))
+                            : null;
+                    return new Result(pageCount, thumbnail);
+                }
+            }
+            return new Result(null, thumbnail(readImage(in)));
+        }
+    }
+
+    private BufferedImage readImage(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image content");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (thumbnailSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private byte[] thumbnail(BufferedImage image) throws IOException {
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "png", out);
+        return out.toByteArray();
+    }
+
+    public static final class Result {
+
+        private final Integer pageCount;
+        private final byte[] thumbnail;
+
+        private Result(Integer pageCount, byte[] thumbnail) {
+            this.pageCount = pageCount;
+            this.thumbnail = thumbnail;
+        }
+
+        public Integer getPageCount() {
+            return pageCount;
+        }
+
+        public byte[] getThumbnail() {
+            return thumbnail;
+        }
+    }
+}
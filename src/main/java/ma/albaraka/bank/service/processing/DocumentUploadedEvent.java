@@ -0,0 +1,16 @@
+package ma.albaraka.bank.service.processing;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the upload transaction; the processing pipeline picks it up once that commits.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class DocumentUploadedEvent {
+
+    private final Long documentId;
+}
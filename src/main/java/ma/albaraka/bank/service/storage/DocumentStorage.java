@@ -0,0 +1,56 @@
+package ma.albaraka.bank.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Stores document content under opaque locations, which are what {@code storagePath} columns hold.
+ * The implementation is selected with {@code app.storage.type}.
+ */
+public interface DocumentStorage {
+
+    /**
+     * Returns the location for content stored under the given key. A key always maps to the same location.
+     */
+    String locationOf(String key);
+
+    /**
+     * Returns where content of the key currently at the location should live, which is the location
+     * itself when it does not need to move.
+     */
+    default String targetOf(String key, String location) {
+        return locationOf(key);
+    }
+
+    boolean exists(String location);
+
+    /**
+     * Stores the content of the key and returns its location. Readers never see partially written content.
+     */
+    String write(String key, InputStream content, long size) throws IOException;
+
+    Resource open(String location);
+
+    void delete(String location) throws IOException;
+
+    void move(String from, String to) throws IOException;
+
+    /**
+     * Lists the location of everything stored, lazily. The stream must be closed.
+     */
+    Stream<String> locations() throws IOException;
+
+    Instant lastModified(String location) throws IOException;
+
+    /**
+     * Returns every form a row may hold to refer to the location, including those written by older versions.
+     */
+    default List<String> aliasesOf(String location) {
+        return List.of(location);
+    }
+}
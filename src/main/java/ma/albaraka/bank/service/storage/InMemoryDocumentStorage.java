@@ -0,0 +1,84 @@
+package ma.albaraka.bank.service.storage;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps document content in process memory, for tests and local runs without a writable disk.
+ * Everything is lost on restart.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "memory")
+public class InMemoryDocumentStorage implements DocumentStorage {
+
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+    private final Map<String, Instant> writtenAt = new ConcurrentHashMap<>();
+
+    @Override
+    public String locationOf(String key) {
+        return key;
+    }
+
+    @Override
+    public boolean exists(String location) {
+        return contents.containsKey(location);
+    }
+
+    @Override
+    public String write(String key, InputStream content, long size) throws IOException {
+        contents.put(key, content.readAllBytes());
+        writtenAt.put(key, Instant.now());
+        return key;
+    }
+
+    @Override
+    public Resource open(String location) {
+        byte[] content = contents.get(location);
+        if (content == null) {
+            throw new IllegalArgumentException("No content at " + location);
+        }
+        return new ByteArrayResource(content);
+    }
+
+    @Override
+    public void delete(String location) {
+        contents.remove(location);
+        writtenAt.remove(location);
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        byte[] content = contents.remove(from);
+        if (content == null) {
+            throw new FileNotFoundException(from);
+        }
+        contents.put(to, content);
+        writtenAt.put(to, writtenAt.getOrDefault(from, Instant.now()));
+        writtenAt.remove(from);
+    }
+
+    @Override
+    public Stream<String> locations() {
+        return List.copyOf(contents.keySet()).stream();
+    }
+
+    @Override
+    public Instant lastModified(String location) throws IOException {
+        Instant instant = writtenAt.get(location);
+        if (instant == null) {
+            throw new FileNotFoundException(location);
+        }
+        return instant;
+    }
+}
@@ -0,0 +1,237 @@
+package ma.albaraka.bank.service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One append-only segment file of {@link PackedDocumentStorage}. Each record is a 9 byte header
+ * (magic, state, length) followed by the content; a location points at the header. Deleting a
+ * record only flips its state byte, the space is reclaimed when the segment is compacted.
+ * <p>
+ * Reads are slices of read-only mappings of fixed windows of the file, 64 MB unless a test asks otherwise.
+ * A window is mapped once it is completely written and kept until the segment is closed; records
+ * that straddle two windows or lie in the unfilled last one are read with positional reads. The JDK
+ * unmaps a window when the segment and every slice handed out of it have been garbage collected.
+ */
+final class PackSegment implements Closeable {
+
+    static final int HEADER_SIZE = 9;
+    static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x50414B31;
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 0;
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final long windowBytes;
+
+    private final Map<Long, MappedByteBuffer> windows = new ConcurrentHashMap<>();
+
+    private volatile long size;
+    private long liveBytes;
+    private long deadBytes;
+
+    private PackSegment(int id, Path path, FileChannel channel, long windowBytes) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * Opens or creates the segment file and counts its live and deleted records. A record cut
+     * short by a crash during an append is truncated away.
+     */
+    static PackSegment open(int id, Path path) throws IOException {
+        return open(id, path, WINDOW_BYTES);
+    }
+
+    static PackSegment open(int id, Path path, long windowBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PackSegment segment = new PackSegment(id, path, channel, windowBytes);
+        segment.scan();
+        return segment;
+    }
+
+    int id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long size() {
+        return size;
+    }
+
+    synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    synchronized double deadRatio() {
+        long total = liveBytes + deadBytes;
+        return total == 0 ? 0 : (double) deadBytes / total;
+    }
+
+    /**
+     * Appends a live record and returns its offset once it is on disk.
+     */
+    synchronized long append(byte[] content) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + content.length);
+        record.putInt(MAGIC).put(LIVE).putInt(content.length).put(content).flip();
+
+        long offset = size;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        channel.force(false);
+
+        size += record.capacity();
+        liveBytes += record.capacity();
+        return offset;
+    }
+
+    synchronized boolean contains(long offset, int length) throws IOException {
+        if (offset < 0 || offset + HEADER_SIZE + length > size) {
+            return false;
+        }
+        ByteBuffer header = readHeader(offset);
+        return header.getInt() == MAGIC && header.get() == LIVE && header.getInt() == length;
+    }
+
+    /**
+     * Returns a read-only view of the content of the record at the offset.
+     */
+    ByteBuffer slice(long offset, int length) throws IOException {
+        long window = offset / windowBytes;
+        long windowStart = window * windowBytes;
+        long windowEnd = windowStart + windowBytes;
+        if (offset + HEADER_SIZE + length > windowEnd || windowEnd > size) {
+            return read(offset, length);
+        }
+
+        MappedByteBuffer mapping = windows.get(window);
+        if (mapping == null) {
+            synchronized (this) {
+                mapping = windows.get(window);
+                if (mapping == null) {
+                    mapping = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowBytes);
+                    windows.put(window, mapping);
+                }
+            }
+        }
+        int position = (int) (offset - windowStart);
+        if (mapping.getInt(position) != MAGIC || mapping.getInt(position + 5) != length) {
+            throw new IOException("No record of " + length + " bytes at " + offset + " in segment " + id);
+        }
+        return mapping.slice(position + HEADER_SIZE, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Flags the record as deleted. Returns false when it already was.
+     */
+    synchronized boolean markDeleted(long offset, int length) throws IOException {
+        if (!contains(offset, length)) {
+            return false;
+        }
+        channel.write(ByteBuffer.wrap(new byte[] {DELETED}), offset + 4);
+        liveBytes -= HEADER_SIZE + length;
+        deadBytes += HEADER_SIZE + length;
+        return true;
+    }
+
+    /**
+     * Returns the offset and length of every live record.
+     */
+    synchronized List<long[]> liveRecords() throws IOException {
+        List<long[]> records = new ArrayList<>();
+        long position = 0;
+        while (position < size) {
+            ByteBuffer header = readHeader(position);
+            header.getInt();
+            byte state = header.get();
+            int length = header.getInt();
+            if (state == LIVE) {
+                records.add(new long[] {position, length});
+            }
+            position += HEADER_SIZE + length;
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        windows.clear();
+        channel.close();
+    }
+
+    void closeAndDelete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    private void scan() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            ByteBuffer header = readHeader(position);
+            int magic = header.getInt();
+            byte state = header.get();
+            int length = header.getInt();
+            if (magic != MAGIC || length < 0 || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            if (state == LIVE) {
+                liveBytes += HEADER_SIZE + length;
+            } else {
+                deadBytes += HEADER_SIZE + length;
+            }
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (offset < 0 || offset + HEADER_SIZE + length > size) {
+            throw new IOException("Record " + offset + " is past the end of segment " + id);
+        }
+        ByteBuffer header = readHeader(offset);
+        if (header.getInt() != MAGIC || header.getInt(5) != length) {
+            throw new IOException("No record of " + length + " bytes at " + offset + " in segment " + id);
+        }
+        ByteBuffer content = ByteBuffer.allocate(length);
+        while (content.hasRemaining()) {
+            if (channel.read(content, offset + HEADER_SIZE + content.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + id + " at " + offset);
+            }
+        }
+        return content.flip().asReadOnlyBuffer();
+    }
+
+    private ByteBuffer readHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, offset + header.position()) < 0) {
+                throw new IOException("Unexpected end of segment " + id + " at " + offset);
+            }
+        }
+        return header.flip();
+    }
+}
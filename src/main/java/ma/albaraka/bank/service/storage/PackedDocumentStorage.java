@@ -0,0 +1,389 @@
+package ma.albaraka.bank.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.repository.DocumentRepository;
+
+/**
+ * Appends content up to {@code app.storage.pack.max-blob-bytes} to large segment files under
+ * {@code app.upload.dir/packs} and stores anything bigger as an individual sharded file. A packed
+ * location is {@code pack:<segment>:<offset>:<length>}, so the rows referencing content are the
+ * offset index. Reads are served from memory-mapped windows of the segment.
+ * <p>
+ * Once deletes have left a sealed segment with more than {@code app.storage.pack.compaction-threshold}
+ * of dead bytes, its live records are copied to the active segment in the background, the rows
+ * are pointed at the copies, and the segment is retired. Retired segments stay readable for a
+ * grace period for requests that loaded the old location, then they are removed. The rows are the
+ * only lasting record of where content lives: the in-memory forwarding from old to new locations
+ * only serves requests in flight during a compaction and is not needed after a restart.
+ * <p>
+ * Segments are appended to and compacted by a single process. A lock file in the pack directory
+ * makes a second instance pointed at the same upload directory fail at startup; instances that
+ * share a database need their own upload directories or the filesystem storage.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "packed")
+public class PackedDocumentStorage implements DocumentStorage, DisposableBean {
+
+    private static final String PREFIX = "pack:";
+    private static final Pattern LOCATION = Pattern.compile("pack:(\\d+):(\\d+):(\\d+)");
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.pack");
+    private static final String WRITER_LOCK = "writer.lock";
+
+    private final ShardedFileSystemDocumentStorage files;
+    private final DocumentRepository documentRepository;
+    private final DocumentBlobRepository documentBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path packDir;
+    private final long maxBlobBytes;
+    private final long segmentBytes;
+    private final double compactionThreshold;
+    private final long retiredGraceMs;
+
+    private final Map<Integer, PackSegment> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> retiredAt = new ConcurrentHashMap<>();
+    private final Map<String, String> forwarded = new ConcurrentHashMap<>();
+    private final Set<Integer> compactionQueued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pack-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile PackSegment active;
+    private FileChannel writerLockChannel;
+
+    public PackedDocumentStorage(
+            DocumentRepository documentRepository,
+            DocumentBlobRepository documentBlobRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.upload.dir:uploads}") String uploadDir,
+            @Value("${app.storage.pack.max-blob-bytes:262144}") long maxBlobBytes,
+            @Value("${app.storage.pack.segment-bytes:268435456}") long segmentBytes,
+            @Value("${app.storage.pack.compaction-threshold:0.5}") double compactionThreshold,
+            @Value("${app.storage.pack.retired-grace-minutes:10}") long retiredGraceMinutes) {
+        this.files = new ShardedFileSystemDocumentStorage(uploadDir);
+        this.documentRepository = documentRepository;
+        this.documentBlobRepository = documentBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.packDir = Paths.get(uploadDir, ShardedFileSystemDocumentStorage.PACK_DIRECTORY);
+        this.maxBlobBytes = maxBlobBytes;
+        this.segmentBytes = segmentBytes;
+        this.compactionThreshold = compactionThreshold;
+        this.retiredGraceMs = retiredGraceMinutes * 60_000;
+    }
+
+    @PostConstruct
+    public void openSegments() throws IOException {
+        Files.createDirectories(packDir);
+        writerLockChannel = FileChannel.open(packDir.resolve(WRITER_LOCK),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock writerLock;
+        try {
+            writerLock = writerLockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another storage in this JVM, such as a second application context.
+            writerLock = null;
+        }
+        if (writerLock == null) {
+            writerLockChannel.close();
+            writerLockChannel = null;
+            throw new IllegalStateException("Pack segments in " + packDir + " are in use by another process");
+        }
+        try (Stream<Path> paths = Files.list(packDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    PackSegment segment = PackSegment.open(Integer.parseInt(matcher.group(1)), path);
+                    segments.put(segment.id(), segment);
+                }
+            }
+        }
+
+        int lastId = segments.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        PackSegment last = segments.get(lastId);
+        active = last != null && last.size() < segmentBytes ? last : createSegment(lastId + 1);
+
+        // Nothing can hold a location into an empty sealed segment before the first request.
+        for (PackSegment segment : List.copyOf(segments.values())) {
+            if (segment != active && segment.liveBytes() == 0) {
+                removeSegment(segment);
+            }
+        }
+        log.info("Opened {} pack segments, appending to segment {}", segments.size(), active.id());
+    }
+
+    @Override
+    public String locationOf(String key) {
+        return files.locationOf(key);
+    }
+
+    @Override
+    public String targetOf(String key, String location) {
+        return isPacked(location) ? location : files.locationOf(key);
+    }
+
+    @Override
+    public boolean exists(String location) {
+        if (!isPacked(location)) {
+            return files.exists(location);
+        }
+        Matcher matcher = parse(forward(location));
+        PackSegment segment = segments.get(Integer.parseInt(matcher.group(1)));
+        try {
+            return segment != null && segment.contains(Long.parseLong(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String write(String key, InputStream content, long size) throws IOException {
+        if (size > maxBlobBytes) {
+            return files.write(key, content, size);
+        }
+        return append(content.readAllBytes());
+    }
+
+    @Override
+    public Resource open(String location) {
+        if (!isPacked(location)) {
+            return files.open(location);
+        }
+        Matcher matcher = parse(location);
+        PackSegment segment = segments.get(Integer.parseInt(matcher.group(1)));
+        if (segment == null) {
+            // The segment was compacted and removed after the caller loaded the location.
+            matcher = parse(forward(location));
+            segment = segments.get(Integer.parseInt(matcher.group(1)));
+        }
+        if (segment == null) {
+            throw new IllegalArgumentException("No content at " + location);
+        }
+        try {
+            return new ByteBufferResource(
+                    segment.slice(Long.parseLong(matcher.group(2)), Integer.parseInt(matcher.group(3))), location);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String location) throws IOException {
+        if (!isPacked(location)) {
+            files.delete(location);
+            return;
+        }
+        String current = forward(location);
+        while (!markDeleted(current)) {
+            // A compaction may have copied the record and started forwarding it since it was looked up.
+            String next = forward(current);
+            if (next.equals(current)) {
+                return;
+            }
+            current = next;
+        }
+        PackSegment segment = segments.get(Integer.parseInt(parse(current).group(1)));
+        if (segment != null && segment != active && segment.deadRatio() >= compactionThreshold
+                && compactionQueued.add(segment.id())) {
+            compactor.execute(() -> compact(segment));
+        }
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        if (isPacked(from) || isPacked(to)) {
+            throw new IOException("Packed content is relocated by compaction only");
+        }
+        files.move(from, to);
+    }
+
+    @Override
+    public Stream<String> locations() throws IOException {
+        Stream<String> packed = List.copyOf(segments.values()).stream().flatMap(segment -> {
+            try {
+                return segment.liveRecords().stream()
+                        .map(record -> PREFIX + segment.id() + ":" + record[0] + ":" + record[1]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return Stream.concat(files.locations(), packed);
+    }
+
+    @Override
+    public Instant lastModified(String location) throws IOException {
+        if (!isPacked(location)) {
+            return files.lastModified(location);
+        }
+        PackSegment segment = segments.get(Integer.parseInt(parse(location).group(1)));
+        if (segment == null) {
+            throw new IOException("No content at " + location);
+        }
+        // Conservative: the time of the last append to the segment, never older than the record.
+        return Files.getLastModifiedTime(segment.path()).toInstant();
+    }
+
+    @Override
+    public List<String> aliasesOf(String location) {
+        return isPacked(location) ? List.of(location) : files.aliasesOf(location);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        compactor.shutdownNow();
+        for (PackSegment segment : segments.values()) {
+            segment.close();
+        }
+        if (writerLockChannel != null) {
+            // Closing the channel releases the lock.
+            writerLockChannel.close();
+        }
+    }
+
+    private synchronized String append(byte[] content) throws IOException {
+        if (active.size() > 0 && active.size() + PackSegment.HEADER_SIZE + content.length > segmentBytes) {
+            active = createSegment(active.id() + 1);
+        }
+        long offset = active.append(content);
+        return PREFIX + active.id() + ":" + offset + ":" + content.length;
+    }
+
+    private void compact(PackSegment segment) {
+        try {
+            removeExpiredSegments();
+
+            Map<String, String> moves = new LinkedHashMap<>();
+            for (long[] record : segment.liveRecords()) {
+                ByteBuffer source = segment.slice(record[0], (int) record[1]);
+                byte[] content = new byte[source.remaining()];
+                source.get(content);
+                moves.put(PREFIX + segment.id() + ":" + record[0] + ":" + record[1], append(content));
+            }
+
+            try {
+                // Blob rows first: their row locks wait for uploads that referenced the old location
+                // to commit, so the document rows those uploads insert are rewritten as well.
+                transactionTemplate.executeWithoutResult(status -> {
+                    moves.forEach(documentBlobRepository::updateStoragePathByPath);
+                    moves.forEach(documentRepository::updateStoragePathByPath);
+                    moves.forEach(documentRepository::updateThumbnailPathByPath);
+                });
+            } catch (RuntimeException e) {
+                for (String copy : moves.values()) {
+                    delete(copy);
+                }
+                throw e;
+            }
+
+            forwarded.putAll(moves);
+            for (Map.Entry<String, String> move : moves.entrySet()) {
+                // Deleted after it was copied but before deletes were forwarded to the copy.
+                if (!markDeleted(move.getKey())) {
+                    delete(move.getValue());
+                }
+            }
+            retiredAt.put(segment.id(), System.currentTimeMillis());
+            log.info("Compacted pack segment {}, moved {} records", segment.id(), moves.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Compaction of pack segment {} failed: {}", segment.id(), e.getMessage());
+        } finally {
+            compactionQueued.remove(segment.id());
+        }
+    }
+
+    private void removeExpiredSegments() throws IOException {
+        long cutoff = System.currentTimeMillis() - retiredGraceMs;
+        Iterator<Map.Entry<Integer, Long>> iterator = retiredAt.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Long> retired = iterator.next();
+            if (retired.getValue() < cutoff) {
+                PackSegment segment = segments.get(retired.getKey());
+                if (segment != null) {
+                    removeSegment(segment);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void removeSegment(PackSegment segment) throws IOException {
+        segments.remove(segment.id());
+        String prefix = PREFIX + segment.id() + ":";
+        forwarded.keySet().removeIf(location -> location.startsWith(prefix));
+        segment.closeAndDelete();
+    }
+
+    /**
+     * Flags the record at the location as deleted. Returns false when it already was, or its
+     * segment is gone.
+     */
+    private boolean markDeleted(String location) throws IOException {
+        Matcher matcher = parse(location);
+        PackSegment segment = segments.get(Integer.parseInt(matcher.group(1)));
+        return segment != null
+                && segment.markDeleted(Long.parseLong(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+    }
+
+    private PackSegment createSegment(int id) throws IOException {
+        PackSegment segment = PackSegment.open(id, packDir.resolve(String.format("segment-%06d.pack", id)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private String forward(String location) {
+        String current = location;
+        String next;
+        // A record can be compacted more than once before its old segments are removed.
+        while ((next = forwarded.get(current)) != null) {
+            current = next;
+        }
+        return current;
+    }
+
+    private static boolean isPacked(String location) {
+        return location.startsWith(PREFIX);
+    }
+
+    private static Matcher parse(String location) {
+        Matcher matcher = LOCATION.matcher(location);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid pack location " + location);
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,143 @@
+package ma.albaraka.bank.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps files under {@code app.upload.dir} in two levels of 256 directories chosen by the SHA-256
+ * of the key, so no directory grows past a few dozen entries even with millions of documents.
+ * Locations are relative to the upload directory. Paths written before sharding, which already
+ * start with the upload directory, are still resolved as they are.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class ShardedFileSystemDocumentStorage implements DocumentStorage {
+
+    /** Directory under the upload directory that holds pack segments, which are not documents themselves. */
+    static final String PACK_DIRECTORY = "packs";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public ShardedFileSystemDocumentStorage(@Value("${app.upload.dir:uploads}") String uploadDir) {
+        this.root = Paths.get(uploadDir).normalize();
+    }
+
+    @Override
+    public String locationOf(String key) {
+        String shard = shardOf(key);
+        return shard.substring(0, 2) + "/" + shard.substring(2, 4) + "/" + key;
+    }
+
+    @Override
+    public boolean exists(String location) {
+        return Files.isRegularFile(resolve(location));
+    }
+
+    @Override
+    public String write(String key, InputStream content, long size) throws IOException {
+        String location = locationOf(key);
+        Path target = resolve(location);
+        Files.createDirectories(target.getParent());
+        Path tempPath = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try (ReadableByteChannel source = Channels.newChannel(content);
+             FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, BUFFER_SIZE)) > 0) {
+                position += transferred;
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return location;
+    }
+
+    @Override
+    public Resource open(String location) {
+        return new FileSystemResource(resolve(location));
+    }
+
+    @Override
+    public void delete(String location) throws IOException {
+        Files.deleteIfExists(resolve(location));
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        Path target = resolve(to);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(resolve(from), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(resolve(from), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Stream<String> locations() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        Path packs = root.resolve(PACK_DIRECTORY);
+        return Files.walk(root)
+                .filter(path -> !path.startsWith(packs))
+                .filter(Files::isRegularFile)
+                .map(path -> root.relativize(path).toString().replace('\\', '/'));
+    }
+
+    @Override
+    public Instant lastModified(String location) throws IOException {
+        return Files.getLastModifiedTime(resolve(location)).toInstant();
+    }
+
+    @Override
+    public List<String> aliasesOf(String location) {
+        // Rows written before sharding hold the path including the upload directory.
+        return List.of(location, root.resolve(location).toString());
+    }
+
+    private Path resolve(String location) {
+        Path path = Paths.get(location).normalize();
+        if (path.isAbsolute() || path.startsWith(root)) {
+            return path;
+        }
+        return root.resolve(path);
+    }
+
+    private static String shardOf(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+--liquibase formatted sql
+
+--changeset author:optimistic-locking id:002-account-version
+ALTER TABLE accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,29 @@
+--liquibase formatted sql
+
+--changeset author:ledger-entries id:003-ledger-entries
+CREATE TABLE ledger_entries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    operation_id BIGINT NOT NULL,
+    account_id BIGINT,
+    direction VARCHAR(10) NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    posted_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_ledger_entries_operation FOREIGN KEY (operation_id) REFERENCES operations(id),
+    CONSTRAINT fk_ledger_entries_account FOREIGN KEY (account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX idx_ledger_entries_account_posted_at ON ledger_entries(account_id, posted_at);
+CREATE INDEX idx_ledger_entries_posted_at ON ledger_entries(posted_at);
+CREATE INDEX idx_ledger_entries_operation_id ON ledger_entries(operation_id);
+
+--changeset author:balance-checkpoints id:003-balance-checkpoints
+CREATE TABLE balance_checkpoints (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    as_of TIMESTAMP(6) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_balance_checkpoints_account FOREIGN KEY (account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX idx_balance_checkpoints_account_as_of ON balance_checkpoints(account_id, as_of);
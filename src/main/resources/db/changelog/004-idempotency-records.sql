@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset author:idempotency-records id:004-idempotency-records
+CREATE TABLE idempotency_records (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    operation_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_idempotency_records_user_key UNIQUE (user_id, idempotency_key),
+    CONSTRAINT fk_idempotency_records_user FOREIGN KEY (user_id) REFERENCES users(id),
+    CONSTRAINT fk_idempotency_records_operation FOREIGN KEY (operation_id) REFERENCES operations(id)
+);
+
+CREATE INDEX idx_idempotency_records_created_at ON idempotency_records(created_at);
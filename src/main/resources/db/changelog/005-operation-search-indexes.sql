@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset author:operation-search-indexes id:005-operation-search-indexes
+CREATE INDEX idx_operations_created_at_id ON operations(created_at, id);
+CREATE INDEX idx_operations_created_by_created_at_id ON operations(created_by_id, created_at, id);
+CREATE INDEX idx_operations_status_created_at_id ON operations(status, created_at, id);
+CREATE INDEX idx_operations_type_created_at_id ON operations(type, created_at, id);
+CREATE INDEX idx_operations_source_created_at_id ON operations(source_account_id, created_at, id);
+CREATE INDEX idx_operations_destination_created_at_id ON operations(destination_account_id, created_at, id);
@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset author:number-sequences id:006-number-sequences
+CREATE TABLE number_sequences (
+    name VARCHAR(50) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+INSERT INTO number_sequences (name, next_value) VALUES ('account_number', 1);
@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset author:id-generators id:007-id-generators
+CREATE TABLE id_generators (
+    sequence_name VARCHAR(50) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+-- Pooled generators hand out the block below next_val, so start one full block past the current maximum.
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'users', COALESCE(MAX(id), 0) + 51 FROM users;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'accounts', COALESCE(MAX(id), 0) + 51 FROM accounts;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'operations', COALESCE(MAX(id), 0) + 51 FROM operations;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'documents', COALESCE(MAX(id), 0) + 51 FROM documents;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'ledger_entries', COALESCE(MAX(id), 0) + 51 FROM ledger_entries;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'balance_checkpoints', COALESCE(MAX(id), 0) + 51 FROM balance_checkpoints;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'idempotency_records', COALESCE(MAX(id), 0) + 51 FROM idempotency_records;
@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset author:refresh-tokens id:008-refresh-tokens
+CREATE TABLE refresh_tokens (
+    id BIGINT PRIMARY KEY,
+    token_hash CHAR(64) NOT NULL,
+    family_id VARCHAR(36) NOT NULL,
+    user_id BIGINT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_refresh_tokens_token_hash UNIQUE (token_hash),
+    CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_refresh_tokens_family_id ON refresh_tokens(family_id);
+CREATE INDEX idx_refresh_tokens_expires_at ON refresh_tokens(expires_at);
+
+INSERT INTO id_generators (sequence_name, next_val) VALUES ('refresh_tokens', 51);
@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset author:document-blobs id:009-document-blobs
+CREATE TABLE document_blobs (
+    content_hash CHAR(64) PRIMARY KEY,
+    storage_path VARCHAR(500) NOT NULL,
+    file_size BIGINT NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER TABLE documents ADD COLUMN sha256 CHAR(64) NULL;
+ALTER TABLE documents ADD COLUMN content_hash CHAR(64) NULL;
+ALTER TABLE documents ADD CONSTRAINT fk_documents_content_hash FOREIGN KEY (content_hash) REFERENCES document_blobs(content_hash);
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset author:document-storage-path-indexes id:010-document-storage-path-indexes
+CREATE INDEX idx_documents_storage_path ON documents(storage_path);
+CREATE INDEX idx_document_blobs_storage_path ON document_blobs(storage_path);
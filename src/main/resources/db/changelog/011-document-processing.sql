@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset author:document-processing id:011-document-processing
+ALTER TABLE documents ADD COLUMN processing_status VARCHAR(20) NOT NULL DEFAULT 'PENDING';
+ALTER TABLE documents ADD COLUMN page_count INT NULL;
+ALTER TABLE documents ADD COLUMN thumbnail_path VARCHAR(500) NULL;
+CREATE INDEX idx_documents_processing_status_id ON documents(processing_status, id);
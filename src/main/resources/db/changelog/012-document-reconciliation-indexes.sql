@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset author:document-reconciliation-indexes id:012-document-reconciliation-indexes
+CREATE INDEX idx_documents_thumbnail_path ON documents(thumbnail_path);
+CREATE INDEX idx_document_blobs_ref_count_created_at ON document_blobs(ref_count, created_at);
@@ -0,0 +1,29 @@
+--liquibase formatted sql
+
+--changeset author:ledger-opening-balances id:013-ledger-opening-balances
+-- Balances that predate the ledger have no entries behind them. The opening balance of each account is
+-- what its balance holds beyond the net of its entries; run before traffic so both sides are stable.
+UPDATE balance_checkpoints c
+SET balance = balance
+    + (SELECT a.balance FROM accounts a WHERE a.id = c.account_id)
+    - (SELECT COALESCE(SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END), 0)
+       FROM ledger_entries e WHERE e.account_id = c.account_id);
+
+-- Ids are taken one block past anything the pooled generator may already have handed out. The opening
+-- checkpoint is dated one day into 1970: TIMESTAMP starts at 1970-01-01 00:00:01 UTC, and the literal is read
+-- in the session time zone.
+INSERT INTO balance_checkpoints (id, account_id, balance, as_of, created_at)
+SELECT (SELECT next_val + 50 FROM id_generators WHERE sequence_name = 'balance_checkpoints') + a.id,
+       a.id,
+       a.balance - (SELECT COALESCE(SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END), 0)
+                    FROM ledger_entries e WHERE e.account_id = a.id),
+       '1970-01-02 00:00:00',
+       CURRENT_TIMESTAMP
+FROM accounts a;
+
+UPDATE id_generators
+SET next_val = (SELECT COALESCE(MAX(id), 0) + 51 FROM balance_checkpoints)
+WHERE sequence_name = 'balance_checkpoints';
+
+--changeset author:balance-checkpoints id:013-balance-checkpoints-as-of-index
+CREATE INDEX idx_balance_checkpoints_as_of ON balance_checkpoints(as_of);
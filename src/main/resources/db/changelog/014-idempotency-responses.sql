@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset author:idempotency-records id:014-idempotency-responses
+-- The key is now claimed before the operation exists, and the response it produced is stored for replay.
+ALTER TABLE idempotency_records MODIFY operation_id BIGINT NULL;
+ALTER TABLE idempotency_records ADD COLUMN response TEXT;
@@ -0,0 +1,139 @@
+package ma.albaraka.bank.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.Role;
+
+/**
+ * Compares the entity read-modify-write path, retried on version conflicts, with the conditional
+ * debit statement when N writers hit one account. Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class BalanceUpdateBenchmarkTest {
+
+    private static final int DEBITS_PER_WRITER = 200;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16})
+    void conditionalDebitAgainstReadModifyWrite(int writers) throws Exception {
+        BigDecimal opening = AMOUNT.multiply(BigDecimal.valueOf((long) writers * DEBITS_PER_WRITER));
+
+        Account entityAccount = openAccount(opening);
+        AtomicLong conflicts = new AtomicLong();
+        long entityNanos = run(writers, () -> readModifyWrite(entityAccount.getId(), conflicts));
+
+        Account conditionalAccount = openAccount(opening);
+        long conditionalNanos = run(writers, () -> transactionTemplate.executeWithoutResult(status ->
+                accountRepository.debit(conditionalAccount.getId(), AMOUNT, LocalDateTime.now())));
+
+        long debits = (long) writers * DEBITS_PER_WRITER;
+        log.info("{} writers, {} debits: read-modify-write {} ops/s ({} version conflicts), conditional update {} ops/s",
+                writers, debits, throughput(debits, entityNanos), conflicts.get(), throughput(debits, conditionalNanos));
+
+        assertThat(balanceOf(entityAccount)).isEqualByComparingTo("0.00");
+        assertThat(balanceOf(conditionalAccount)).isEqualByComparingTo("0.00");
+    }
+
+    private void readModifyWrite(Long accountId, AtomicLong conflicts) {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Account account = accountRepository.findById(accountId).orElseThrow();
+                    if (account.getBalance().compareTo(AMOUNT) >= 0) {
+                        account.setBalance(account.getBalance().subtract(AMOUNT));
+                    }
+                });
+                return;
+            } catch (ConcurrencyFailureException e) {
+                conflicts.incrementAndGet();
+            }
+        }
+    }
+
+    private long run(int writers, Runnable debit) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(writers);
+            for (int i = 0; i < writers; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < DEBITS_PER_WRITER; j++) {
+                        debit.run();
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            return System.nanoTime() - started;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long throughput(long operations, long nanos) {
+        return operations * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+
+    private Account openAccount(BigDecimal balance) {
+        User owner = userRepository.save(User.builder()
+                .email("bench-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Benchmark Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+        return accountRepository.save(Account.builder()
+                .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                .owner(owner)
+                .balance(balance)
+                .status(AccountStatus.ACTIVE)
+                .build());
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+}
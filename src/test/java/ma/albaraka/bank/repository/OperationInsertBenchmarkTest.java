@@ -0,0 +1,116 @@
+package ma.albaraka.bank.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+import ma.albaraka.bank.domain.enums.Role;
+
+/**
+ * Inserts 100k operations with JDBC batching, as the pooled generators allow, and again with one
+ * round trip per row, as IDENTITY ids forced. Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class OperationInsertBenchmarkTest {
+
+    private static final int OPERATIONS = 100_000;
+    private static final int PER_TRANSACTION = 1_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void batchedInsertsAgainstRowByRow() {
+        User client = userRepository.save(User.builder()
+                .email("bench-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Benchmark Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+        Account account = accountRepository.save(Account.builder()
+                .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                .owner(client)
+                .balance(BigDecimal.ZERO)
+                .status(AccountStatus.ACTIVE)
+                .build());
+
+        long rowByRowNanos = insert(client, account, 1);
+        long batchedNanos = insert(client, account, null);
+
+        log.info("{} operations: batched {} rows/s, row by row {} rows/s",
+                OPERATIONS, throughput(batchedNanos), throughput(rowByRowNanos));
+        Long inserted = entityManager.createQuery(
+                        "SELECT COUNT(o) FROM Operation o WHERE o.destinationAccount.id = :accountId", Long.class)
+                .setParameter("accountId", account.getId())
+                .getSingleResult();
+        assertThat(inserted).isEqualTo(2L * OPERATIONS);
+    }
+
+    /**
+     * Inserts the operations in transactions of {@link #PER_TRANSACTION}; a null batch size keeps
+     * the configured {@code hibernate.jdbc.batch_size}.
+     */
+    private long insert(User client, Account account, Integer jdbcBatchSize) {
+        long started = System.nanoTime();
+        for (int done = 0; done < OPERATIONS; done += PER_TRANSACTION) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Session session = entityManager.unwrap(Session.class);
+                if (jdbcBatchSize != null) {
+                    session.setJdbcBatchSize(jdbcBatchSize);
+                }
+                User createdBy = entityManager.getReference(User.class, client.getId());
+                Account destination = entityManager.getReference(Account.class, account.getId());
+                for (int i = 0; i < PER_TRANSACTION; i++) {
+                    entityManager.persist(Operation.builder()
+                            .type(OperationType.DEPOSIT)
+                            .amount(new BigDecimal("10.00"))
+                            .status(OperationStatus.APPROVED)
+                            .destinationAccount(destination)
+                            .createdBy(createdBy)
+                            .executedAt(LocalDateTime.now())
+                            .build());
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return System.nanoTime() - started;
+    }
+
+    private long throughput(long nanos) {
+        return OPERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+}
@@ -0,0 +1,84 @@
+package ma.albaraka.bank.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Per-request token cost before and after parsing once: the old path rebuilt the HMAC key and the
+ * parser for each of its four parses (email, email and expiry again to validate, user id in the
+ * controller), the new one verifies once with a cached parser. Run with {@code mvn test -Pbenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-that-is-long-enough-for-hs256";
+
+    private JwtTokenProvider provider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider(SECRET, 3_600_000L);
+        token = provider.generateToken("client@test.local", "CLIENT", 42L);
+    }
+
+    @Benchmark
+    public void parsePerClaim(Blackhole blackhole) {
+        String email = parseWithFreshKey().getSubject();
+        boolean valid = parseWithFreshKey().getSubject().equals(email)
+                && !parseWithFreshKey().getExpiration().before(new Date());
+        blackhole.consume(valid);
+        blackhole.consume(parseWithFreshKey().get("userId", Long.class));
+    }
+
+    @Benchmark
+    public void parseOnce(Blackhole blackhole) {
+        Claims claims = provider.parseClaims(token);
+        blackhole.consume(claims.getSubject());
+        blackhole.consume(claims.get("role", String.class));
+        blackhole.consume(claims.get("userId", Long.class));
+    }
+
+    private Claims parseWithFreshKey() {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthenticationBenchmark.class.getName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,165 @@
+package ma.albaraka.bank.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.dto.request.LoginRequest;
+import ma.albaraka.bank.exception.TooManyRequestsException;
+import ma.albaraka.bank.exception.UnauthorizedException;
+import ma.albaraka.bank.repository.UserRepository;
+import ma.albaraka.bank.service.AuthService;
+
+/**
+ * Simulates credential stuffing through the login service: once a key is over its threshold the
+ * attempts must stop reaching BCrypt, so the CPU spent per attempt collapses instead of growing
+ * with the attack. Hashes thousands of passwords, so it runs with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "app.security.login-throttle.max-failures-per-email=10",
+        "app.security.login-throttle.max-failures-per-ip=1000000"
+})
+@ActiveProfiles("test")
+class LoginAttemptThrottleStressTest {
+
+    private static final int THREADS = 16;
+    private static final int MAX_FAILURES_PER_EMAIL = 10;
+    private static final int ATTACK_ATTEMPTS = 2_000;
+    private static final String PASSWORD = "correct-horse-battery";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private ExecutorService pool;
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS);
+        email = "stuffed-" + UUID.randomUUID() + "@test.local";
+        userRepository.save(User.builder()
+                .email(email)
+                .password(passwordEncoder.encode(PASSWORD))
+                .fullName("Stuffed Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void attackStopsReachingPasswordVerification() throws Exception {
+        AtomicInteger verified = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+
+        long cpuBefore = processCpuNanos();
+        attack(ATTACK_ATTEMPTS, verified, throttled);
+        long attackCpu = processCpuNanos() - cpuBefore;
+
+        // Threads already past the check when the threshold is reached may still verify once each
+        assertThat(verified.get()).isBetween(MAX_FAILURES_PER_EMAIL, MAX_FAILURES_PER_EMAIL + THREADS);
+        assertThat(throttled.get()).isEqualTo(ATTACK_ATTEMPTS - verified.get());
+
+        // A second wave against the blocked account costs a small fraction of one BCrypt verify
+        long cpuPerVerify = attackCpu / verified.get();
+        long waveBefore = processCpuNanos();
+        attack(ATTACK_ATTEMPTS, verified, throttled);
+        long cpuPerBlockedAttempt = (processCpuNanos() - waveBefore) / ATTACK_ATTEMPTS;
+
+        assertThat(verified.get()).isLessThanOrEqualTo(MAX_FAILURES_PER_EMAIL + THREADS);
+        assertThat(cpuPerBlockedAttempt).isLessThan(cpuPerVerify / 20);
+    }
+
+    @Test
+    void oneFailurePerDistinctEmailIsNeverBlocked() {
+        for (int i = 0; i < 1_000; i++) {
+            String other = "probe-" + i + "-" + UUID.randomUUID() + "@test.local";
+            assertThatThrownBy(() -> authService.login(request(other, "wrong"), "10.0.0.2"))
+                    .isInstanceOf(UnauthorizedException.class);
+        }
+    }
+
+    @Test
+    void successfulLoginClearsTheEmailFailures() {
+        for (int i = 0; i < MAX_FAILURES_PER_EMAIL - 1; i++) {
+            assertThatThrownBy(() -> authService.login(request(email, "wrong"), "10.0.0.3"))
+                    .isInstanceOf(UnauthorizedException.class);
+        }
+        authService.login(request(email, PASSWORD), "10.0.0.3");
+
+        for (int i = 0; i < MAX_FAILURES_PER_EMAIL - 1; i++) {
+            assertThatThrownBy(() -> authService.login(request(email, "wrong"), "10.0.0.3"))
+                    .isInstanceOf(UnauthorizedException.class);
+        }
+    }
+
+    private void attack(int attempts, AtomicInteger verified, AtomicInteger throttled) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger remaining = new AtomicInteger(attempts);
+        List<Future<?>> futures = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            String clientIp = "10.1.0." + i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                while (remaining.getAndDecrement() > 0) {
+                    try {
+                        authService.login(request(email, "guess-" + UUID.randomUUID()), clientIp);
+                    } catch (UnauthorizedException e) {
+                        verified.incrementAndGet();
+                    } catch (TooManyRequestsException e) {
+                        throttled.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Process-wide CPU time; BCrypt runs on the password hashing pool, not on the calling thread.
+     */
+    private long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private LoginRequest request(String login, String password) {
+        return LoginRequest.builder().email(login).password(password).build();
+    }
+}
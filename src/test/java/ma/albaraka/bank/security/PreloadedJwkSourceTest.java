@@ -0,0 +1,137 @@
+package ma.albaraka.bank.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the JWK source against a local stub of the identity provider's certs endpoint.
+ */
+class PreloadedJwkSourceTest {
+
+    private HttpServer server;
+    private final AtomicReference<String> body = new AtomicReference<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            requests.incrementAndGet();
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void keysAreFetchedBeforeTheFirstRequest() throws JOSEException {
+        RSAKey key = generateKey("k1");
+        serve(key);
+
+        PreloadedJwkSource source = newSource("", 60_000);
+        source.preload();
+
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(select(source, "k1")).extracting(JWK::getKeyID).containsExactly("k1");
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRefreshKeepsTheLastGoodSet() throws JOSEException {
+        serve(generateKey("k1"));
+        PreloadedJwkSource source = newSource("", 60_000);
+        source.preload();
+
+        status.set(503);
+        source.scheduledRefresh();
+        assertThat(select(source, "k1")).hasSize(1);
+
+        status.set(200);
+        body.set("not a jwk set");
+        source.scheduledRefresh();
+        assertThat(select(source, "k1")).hasSize(1);
+
+        server.stop(0);
+        source.scheduledRefresh();
+        assertThat(select(source, "k1")).hasSize(1);
+    }
+
+    @Test
+    void localFileSeedsKeysWhileTheProviderIsDown(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("jwks.json");
+        Files.writeString(file, new JWKSet(generateKey("local").toPublicJWK()).toString());
+        server.stop(0);
+
+        PreloadedJwkSource source = newSource(file.toString(), 60_000);
+        source.preload();
+
+        assertThat(select(source, "local")).hasSize(1);
+    }
+
+    @Test
+    void unknownKeyIdRefreshesEarlyAtMostOncePerInterval() throws JOSEException {
+        serve(generateKey("k1"));
+        PreloadedJwkSource source = newSource("", 60_000);
+        source.preload();
+
+        serve(generateKey("k2"));
+        assertThat(select(source, "k2")).isEmpty();
+        assertThat(select(source, "k2")).isEmpty();
+        assertThat(requests.get()).isEqualTo(1);
+
+        PreloadedJwkSource eager = newSource("", 0);
+        eager.preload();
+        serve(generateKey("k3"));
+        assertThat(select(eager, "k3")).extracting(JWK::getKeyID).containsExactly("k3");
+    }
+
+    private PreloadedJwkSource newSource(String file, long minRefreshIntervalMs) {
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/certs";
+        return new PreloadedJwkSource(uri, file, 500, minRefreshIntervalMs);
+    }
+
+    private void serve(RSAKey key) {
+        body.set(new JWKSet(key.toPublicJWK()).toString());
+    }
+
+    private List<JWK> select(PreloadedJwkSource source, String keyId) {
+        return source.get(new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build()), null);
+    }
+
+    private RSAKey generateKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+}
@@ -0,0 +1,69 @@
+package ma.albaraka.bank.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterTest {
+
+    private static final int SLOTS = 10;
+    private static final long WINDOW_MILLIS = 10_000;
+
+    @Test
+    void countsDecaySlotBySlot() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(SLOTS, WINDOW_MILLIS);
+        long start = System.currentTimeMillis();
+
+        counter.increment(start);
+        counter.increment(start + 1_000);
+        counter.increment(start + 1_000);
+        assertThat(counter.count(start + 1_000)).isEqualTo(3);
+
+        // The first slot leaves the window a full window after it was written.
+        assertThat(counter.count(start + WINDOW_MILLIS)).isEqualTo(2);
+        assertThat(counter.count(start + 2 * WINDOW_MILLIS + 1_000)).isZero();
+
+        // A slot coming round again starts from zero.
+        counter.increment(start + WINDOW_MILLIS + 1_000);
+        assertThat(counter.count(start + WINDOW_MILLIS + 1_000)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentIncrementsAreNeverLost() throws Exception {
+        int threads = 8;
+        int incrementsPerThread = 10_000;
+        SlidingWindowCounter counter = new SlidingWindowCounter(SLOTS, WINDOW_MILLIS);
+        long now = System.currentTimeMillis();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < incrementsPerThread; j++) {
+                        counter.increment(now);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(counter.count(now)).isEqualTo(threads * incrementsPerThread);
+    }
+}
@@ -0,0 +1,174 @@
+package ma.albaraka.bank.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import ma.albaraka.bank.domain.entity.Document;
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.DocumentProcessingStatus;
+import ma.albaraka.bank.domain.enums.DocumentType;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.domain.enums.StorageMigrationStatus;
+import ma.albaraka.bank.dto.response.StorageMigrationResponse;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.repository.DocumentRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+import ma.albaraka.bank.service.storage.DocumentStorage;
+import ma.albaraka.bank.service.storage.InMemoryDocumentStorage;
+
+/**
+ * Runs the storage migration against the in-memory storage, where the location of a key is the
+ * key itself, so content stored under any other name has to move.
+ */
+@SpringBootTest(properties = "app.storage.type=memory")
+@ActiveProfiles("test")
+class DocumentStorageMigrationTest {
+
+    @Autowired
+    private DocumentStorageMigrationService migrationService;
+
+    @Autowired
+    private DocumentStorage storage;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void movesContentBeforeRewritingRowsAndCanRunAgain() throws Exception {
+        assertThat(storage).isInstanceOf(InMemoryDocumentStorage.class);
+        Operation operation = saveOperation();
+
+        // Stored under its legacy name, referenced by a blob row and a document row.
+        String legacy = store("legacy/" + hash("legacy"), "legacy");
+        saveBlob(hash("legacy"), legacy);
+        Document shared = saveDocument(operation, legacy, hash("legacy"));
+        // Moved by a run that stopped before rewriting its row.
+        store(hash("interrupted"), "interrupted");
+        saveBlob(hash("interrupted"), "legacy/" + hash("interrupted"));
+        // Already where the storage wants it.
+        saveBlob(hash("in-place"), store(hash("in-place"), "in-place"));
+        // A document uploaded before content was deduplicated, found by its file name.
+        Document unshared = saveDocument(operation, store("legacy/flat/receipt.pdf", "receipt"), null);
+
+        StorageMigrationResponse first = runToCompletion();
+        assertThat(first.getStatus()).isEqualTo(StorageMigrationStatus.COMPLETED);
+        assertThat(first.getMoved()).isEqualTo(3);
+        assertThat(first.getAlreadyInPlace()).isEqualTo(1);
+        assertThat(first.getMissing()).isZero();
+        assertThat(first.getFailed()).isZero();
+
+        assertThat(storage.exists(legacy)).isFalse();
+        assertThat(read(hash("legacy"))).isEqualTo("legacy");
+        assertThat(read("receipt.pdf")).isEqualTo("receipt");
+        assertThat(storagePathOfBlob(hash("legacy"))).isEqualTo(hash("legacy"));
+        assertThat(storagePathOfBlob(hash("interrupted"))).isEqualTo(hash("interrupted"));
+        assertThat(storagePathOfBlob(hash("in-place"))).isEqualTo(hash("in-place"));
+        assertThat(storagePathOfDocument(shared)).isEqualTo(hash("legacy"));
+        assertThat(storagePathOfDocument(unshared)).isEqualTo("receipt.pdf");
+
+        StorageMigrationResponse second = runToCompletion();
+        assertThat(second.getStatus()).isEqualTo(StorageMigrationStatus.COMPLETED);
+        assertThat(second.getScanned()).isEqualTo(first.getScanned());
+        assertThat(second.getMoved()).isZero();
+        assertThat(second.getAlreadyInPlace()).isEqualTo(4);
+        assertThat(read(hash("legacy"))).isEqualTo("legacy");
+        assertThat(read("receipt.pdf")).isEqualTo("receipt");
+    }
+
+    private StorageMigrationResponse runToCompletion() throws InterruptedException {
+        migrationService.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        StorageMigrationResponse status = migrationService.getStatus();
+        while (status.getStatus() == StorageMigrationStatus.RUNNING) {
+            assertThat(System.currentTimeMillis()).as("migration finished").isLessThan(deadline);
+            Thread.sleep(20);
+            status = migrationService.getStatus();
+        }
+        return status;
+    }
+
+    private String store(String key, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return storage.write(key, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private String read(String location) throws IOException {
+        try (InputStream in = storage.open(location).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private String hash(String name) {
+        return String.format("%064x", name.hashCode() & 0xffffffffL);
+    }
+
+    private void saveBlob(String contentHash, String storagePath) {
+        documentBlobRepository.save(DocumentBlob.builder()
+                .contentHash(contentHash)
+                .storagePath(storagePath)
+                .fileSize(16L)
+                .refCount(1)
+                .build());
+    }
+
+    private Document saveDocument(Operation operation, String storagePath, String contentHash) {
+        return documentRepository.save(Document.builder()
+                .operation(operation)
+                .fileName("receipt.pdf")
+                .fileType(DocumentType.PDF)
+                .storagePath(storagePath)
+                .fileSize(16L)
+                .contentHash(contentHash)
+                .processingStatus(DocumentProcessingStatus.COMPLETED)
+                .build());
+    }
+
+    private String storagePathOfBlob(String contentHash) {
+        return documentBlobRepository.findById(contentHash).orElseThrow().getStoragePath();
+    }
+
+    private String storagePathOfDocument(Document document) {
+        return documentRepository.findById(document.getId()).orElseThrow().getStoragePath();
+    }
+
+    private Operation saveOperation() {
+        User client = userRepository.save(User.builder()
+                .email("migration-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Migration Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+        return operationRepository.save(Operation.builder()
+                .type(OperationType.DEPOSIT)
+                .amount(new BigDecimal("20000.00"))
+                .status(OperationStatus.PENDING)
+                .createdBy(client)
+                .build());
+    }
+}
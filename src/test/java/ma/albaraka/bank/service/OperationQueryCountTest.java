@@ -0,0 +1,151 @@
+package ma.albaraka.bank.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import jakarta.persistence.EntityManagerFactory;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.repository.AccountRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * Fails when a list endpoint starts issuing a statement per row, for instance because a mapped
+ * association is no longer fetched with the list query.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class OperationQueryCountTest {
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User client;
+    private User agent;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        client = saveUser(Role.CLIENT);
+        agent = saveUser(Role.AGENT_BANCAIRE);
+    }
+
+    @Test
+    void listingOperationsDoesNotQueryPerRow() {
+        addOperations(5);
+        long few = statementsFor(() -> operationService.getOperationsByUserId(client.getId()));
+
+        addOperations(50);
+        long many = statementsFor(() -> operationService.getOperationsByUserId(client.getId()));
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    @Test
+    void searchingOperationsDoesNotQueryPerRow() {
+        OperationSearchCriteria criteria = OperationSearchCriteria.builder().limit(200).build();
+
+        addOperations(5);
+        long few = statementsFor(() -> operationService.searchOperations(criteria, client.getId()));
+
+        addOperations(50);
+        long many = statementsFor(() -> operationService.searchOperations(criteria, client.getId()));
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    @Test
+    void listingAccountsDoesNotQueryPerRow() {
+        openAccounts(3);
+        long few = statementsFor(() -> accountService.getAccountsByUserId(client.getId()));
+
+        openAccounts(30);
+        long many = statementsFor(() -> accountService.getAccountsByUserId(client.getId()));
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    private long statementsFor(Runnable call) {
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addOperations(int count) {
+        List<Account> accounts = openAccounts(2);
+        List<Operation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            operations.add(Operation.builder()
+                    .type(OperationType.TRANSFER)
+                    .amount(new BigDecimal("12.50"))
+                    .status(OperationStatus.APPROVED)
+                    .sourceAccount(accounts.get(0))
+                    .destinationAccount(accounts.get(1))
+                    .createdBy(client)
+                    .approvedBy(agent)
+                    .approvedAt(LocalDateTime.now())
+                    .executedAt(LocalDateTime.now())
+                    .build());
+        }
+        operationRepository.saveAll(operations);
+    }
+
+    private List<Account> openAccounts(int count) {
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(Account.builder()
+                    .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                    .owner(client)
+                    .balance(new BigDecimal("100.00"))
+                    .status(AccountStatus.ACTIVE)
+                    .build());
+        }
+        return accountRepository.saveAll(accounts);
+    }
+
+    private User saveUser(Role role) {
+        return userRepository.save(User.builder()
+                .email(role.name().toLowerCase() + "-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Query Count " + role.name())
+                .role(role)
+                .active(true)
+                .build());
+    }
+}
@@ -0,0 +1,131 @@
+package ma.albaraka.bank.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.dto.request.OperationSearchCriteria;
+import ma.albaraka.bank.dto.response.CursorPageResponse;
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.repository.AccountRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * Pages through the operations of one account, which are read from its source and destination
+ * sides separately and merged, and checks that every one comes back once and in order.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OperationSearchPagingTest {
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    private User client;
+
+    @BeforeEach
+    void setUp() {
+        client = userRepository.save(User.builder()
+                .email("search-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Search Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+    }
+
+    @Test
+    void accountFilterPagesThroughBothSidesOnce() {
+        Account account = openAccount();
+        Account other = openAccount();
+        Account unrelated = openAccount();
+
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            operations.add(operation(OperationType.TRANSFER, account, other));
+            operations.add(operation(OperationType.DEPOSIT, null, account));
+            operations.add(operation(OperationType.TRANSFER, other, account));
+            operations.add(operation(OperationType.WITHDRAWAL, account, null));
+            operations.add(operation(OperationType.TRANSFER, other, unrelated));
+        }
+        // One batch, so many rows share a creation time and the id decides their order.
+        List<Long> ids = operationRepository.saveAll(operations).stream()
+                .map(Operation::getId)
+                .collect(Collectors.toList());
+
+        // Ordered by the stored timestamps, which may be coarser than the ones in memory.
+        List<Long> expected = operationRepository.findAllById(ids).stream()
+                .filter(operation -> touches(operation, account))
+                .sorted(Comparator.comparing(Operation::getCreatedAt).thenComparing(Operation::getId).reversed())
+                .map(Operation::getId)
+                .collect(Collectors.toList());
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageResponse<OperationResponse> page = operationService.searchOperations(OperationSearchCriteria.builder()
+                    .accountId(account.getId())
+                    .cursor(cursor)
+                    .limit(4)
+                    .build(), client.getId());
+            page.getItems().forEach(item -> paged.add(item.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+
+    private boolean touches(Operation operation, Account account) {
+        return (operation.getSourceAccount() != null && operation.getSourceAccount().getId().equals(account.getId()))
+                || (operation.getDestinationAccount() != null
+                        && operation.getDestinationAccount().getId().equals(account.getId()));
+    }
+
+    private Operation operation(OperationType type, Account source, Account destination) {
+        return Operation.builder()
+                .type(type)
+                .amount(new BigDecimal("10.00"))
+                .status(OperationStatus.APPROVED)
+                .sourceAccount(source)
+                .destinationAccount(destination)
+                .createdBy(client)
+                .build();
+    }
+
+    private Account openAccount() {
+        return accountRepository.save(Account.builder()
+                .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                .owner(client)
+                .balance(new BigDecimal("1000.00"))
+                .status(AccountStatus.ACTIVE)
+                .build());
+    }
+}
@@ -0,0 +1,191 @@
+package ma.albaraka.bank.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.AccountRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * Hammers the same accounts from many threads through the public service and checks that no
+ * update is lost and no account is overdrawn.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OperationServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 25;
+    /** The default {@code app.operations.sharded.shards}, so the ring below spans every shard. */
+    private static final int SHARDS = 4;
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    private ExecutorService pool;
+    private User client;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS);
+        client = userRepository.save(User.builder()
+                .email("client-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Concurrent Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentWithdrawalsNeverOverdrawTheAccount() throws Exception {
+        Account account = openAccount("1000.00");
+        CreateOperationRequest withdrawal = CreateOperationRequest.builder()
+                .type("WITHDRAWAL")
+                .amount(new BigDecimal("10.00"))
+                .sourceAccountId(account.getId())
+                .build();
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                operationService.createOperation(withdrawal, client.getId());
+                succeeded.incrementAndGet();
+            } catch (BusinessRuleException e) {
+                refused.incrementAndGet();
+            }
+        });
+
+        assertThat(succeeded.get()).isEqualTo(100);
+        assertThat(refused.get()).isEqualTo(THREADS * ATTEMPTS_PER_THREAD - 100);
+        assertThat(balanceOf(account)).isEqualByComparingTo("0.00");
+
+        List<Operation> operations = operationRepository.findBySourceAccountId(account.getId());
+        assertThat(operations).hasSize(100)
+                .allSatisfy(operation -> assertThat(operation.getStatus()).isEqualTo(OperationStatus.APPROVED));
+    }
+
+    @Test
+    void opposingTransfersKeepTheTotalBalance() throws Exception {
+        Account first = openAccount("5000.00");
+        Account second = openAccount("5000.00");
+        AtomicInteger turn = new AtomicInteger();
+
+        runConcurrently(() -> {
+            boolean forward = turn.getAndIncrement() % 2 == 0;
+            CreateOperationRequest transfer = CreateOperationRequest.builder()
+                    .type("TRANSFER")
+                    .amount(new BigDecimal("7.00"))
+                    .sourceAccountId(forward ? first.getId() : second.getId())
+                    .destinationAccountId(forward ? second.getId() : first.getId())
+                    .build();
+            operationService.createOperation(transfer, client.getId());
+        });
+
+        assertThat(balanceOf(first).add(balanceOf(second))).isEqualByComparingTo("10000.00");
+        assertThat(balanceOf(first)).isEqualByComparingTo("5000.00");
+    }
+
+    @Test
+    void transfersAcrossShardsKeepEveryBalance() throws Exception {
+        List<Account> ring = openAccountsOnDistinctShards("5000.00");
+        AtomicInteger turn = new AtomicInteger();
+
+        runConcurrently(() -> {
+            int position = turn.getAndIncrement() % ring.size();
+            CreateOperationRequest transfer = CreateOperationRequest.builder()
+                    .type("TRANSFER")
+                    .amount(new BigDecimal("5.00"))
+                    .sourceAccountId(ring.get(position).getId())
+                    .destinationAccountId(ring.get((position + 1) % ring.size()).getId())
+                    .build();
+            operationService.createOperation(transfer, client.getId());
+        });
+
+        // Every account sent and received the same number of transfers.
+        ring.forEach(account -> assertThat(balanceOf(account)).isEqualByComparingTo("5000.00"));
+    }
+
+    private List<Account> openAccountsOnDistinctShards(String balance) {
+        Map<Long, Account> byShard = new TreeMap<>();
+        while (byShard.size() < SHARDS) {
+            Account account = openAccount(balance);
+            byShard.putIfAbsent(Math.floorMod(account.getId(), (long) SHARDS), account);
+        }
+        return new ArrayList<>(byShard.values());
+    }
+
+    private Account openAccount(String balance) {
+        return accountRepository.save(Account.builder()
+                .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                .owner(client)
+                .balance(new BigDecimal(balance))
+                .status(AccountStatus.ACTIVE)
+                .build());
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private void runConcurrently(Runnable attempt) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+                    attempt.run();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(2, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ma.albaraka.bank.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.dto.request.CreateOperationRequest;
+import ma.albaraka.bank.dto.response.OperationResponse;
+import ma.albaraka.bank.exception.BusinessRuleException;
+import ma.albaraka.bank.repository.AccountRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * A live lease keeps other agents from deciding a pending operation; without one anybody may.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PendingOperationLeaseTest {
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private PendingOperationService pendingOperationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    private User client;
+    private User agent;
+    private User otherAgent;
+
+    @BeforeEach
+    void setUp() {
+        client = saveUser(Role.CLIENT);
+        agent = saveUser(Role.AGENT_BANCAIRE);
+        otherAgent = saveUser(Role.AGENT_BANCAIRE);
+    }
+
+    @Test
+    void decidingWithoutALeaseIsAllowed() {
+        Long approved = createPendingDeposit();
+        Long rejected = createPendingDeposit();
+
+        operationService.approveOperation(approved, agent.getId());
+        operationService.rejectOperation(rejected, agent.getId(), "No lease");
+
+        assertThat(statusOf(approved)).isEqualTo(OperationStatus.APPROVED);
+        assertThat(statusOf(rejected)).isEqualTo(OperationStatus.REJECTED);
+    }
+
+    @Test
+    void onlyTheLeaseHolderCanDecide() {
+        Long id = createPendingDeposit();
+        pendingOperationService.claim(id, otherAgent.getId());
+
+        assertThatThrownBy(() -> operationService.approveOperation(id, agent.getId()))
+                .isInstanceOf(BusinessRuleException.class);
+        assertThat(statusOf(id)).isEqualTo(OperationStatus.PENDING);
+
+        operationService.approveOperation(id, otherAgent.getId());
+        assertThat(statusOf(id)).isEqualTo(OperationStatus.APPROVED);
+        assertThat(pendingOperationService.getQueue())
+                .noneMatch(item -> item.getOperation().getId().equals(id));
+    }
+
+    @Test
+    void releasedLeaseNoLongerBlocksOthers() {
+        Long id = createPendingDeposit();
+        pendingOperationService.claim(id, otherAgent.getId());
+        pendingOperationService.release(id, otherAgent.getId());
+
+        operationService.rejectOperation(id, agent.getId(), "Missing documents");
+        assertThat(statusOf(id)).isEqualTo(OperationStatus.REJECTED);
+    }
+
+    @Test
+    void aDecidedOperationCannotBeDecidedAgain() {
+        Long id = createPendingDeposit();
+        pendingOperationService.claim(id, agent.getId());
+        operationService.rejectOperation(id, agent.getId(), "Missing documents");
+
+        assertThatThrownBy(() -> operationService.approveOperation(id, agent.getId()))
+                .isInstanceOf(BusinessRuleException.class);
+        assertThat(statusOf(id)).isEqualTo(OperationStatus.REJECTED);
+    }
+
+    private Long createPendingDeposit() {
+        Account account = accountRepository.save(Account.builder()
+                .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                .owner(client)
+                .balance(BigDecimal.ZERO)
+                .status(AccountStatus.ACTIVE)
+                .build());
+        OperationResponse created = operationService.createOperation(CreateOperationRequest.builder()
+                .type("DEPOSIT")
+                .amount(new BigDecimal("20000.00"))
+                .destinationAccountId(account.getId())
+                .build(), client.getId());
+        assertThat(statusOf(created.getId())).isEqualTo(OperationStatus.PENDING);
+        return created.getId();
+    }
+
+    private OperationStatus statusOf(Long id) {
+        return operationRepository.findById(id).orElseThrow().getStatus();
+    }
+
+    private User saveUser(Role role) {
+        return userRepository.save(User.builder()
+                .email(role.name().toLowerCase() + "-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Lease " + role.name())
+                .role(role)
+                .active(true)
+                .build());
+    }
+}
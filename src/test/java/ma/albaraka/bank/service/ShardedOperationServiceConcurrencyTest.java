@@ -0,0 +1,16 @@
+package ma.albaraka.bank.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs the same contention scenarios through the sharded executor. The pool is smaller than the
+ * number of callers, so a caller holding a connection while its shard waits for one would stall.
+ */
+@SpringBootTest(properties = {
+        "app.operations.execution-strategy=sharded",
+        "spring.datasource.hikari.maximum-pool-size=8"
+})
+@ActiveProfiles("test")
+class ShardedOperationServiceConcurrencyTest extends OperationServiceConcurrencyTest {
+}
@@ -0,0 +1,168 @@
+package ma.albaraka.bank.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ma.albaraka.bank.domain.entity.Account;
+import ma.albaraka.bank.domain.entity.Operation;
+import ma.albaraka.bank.domain.entity.User;
+import ma.albaraka.bank.domain.enums.AccountStatus;
+import ma.albaraka.bank.domain.enums.OperationStatus;
+import ma.albaraka.bank.domain.enums.OperationType;
+import ma.albaraka.bank.domain.enums.Role;
+import ma.albaraka.bank.repository.AccountRepository;
+import ma.albaraka.bank.repository.OperationRepository;
+import ma.albaraka.bank.repository.UserRepository;
+
+/**
+ * Compares the JPA executor, which applies each unit in the caller's transaction, with the sharded
+ * executor, which group-commits units per shard, when N writers deposit to one hot account or
+ * spread over several. Each unit writes its operation row as well as the balance, like the
+ * service does. Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class BalanceExecutorThroughputBenchmarkTest {
+
+    private static final int UNITS_PER_WRITER = 200;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private JpaBalanceExecutor jpaBalanceExecutor;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @ParameterizedTest
+    @CsvSource({"4, 1", "16, 1", "4, 16", "16, 16"})
+    void shardedAgainstJpa(int writers, int accountCount) throws Exception {
+        User owner = saveOwner();
+        long units = (long) writers * UNITS_PER_WRITER;
+
+        List<Account> jpaAccounts = openAccounts(owner, accountCount);
+        long jpaNanos = run(writers, jpaAccounts, owner, (operations, effects) ->
+                transactionTemplate.executeWithoutResult(status -> jpaBalanceExecutor.execute(operations, effects)));
+
+        ShardedBalanceExecutor sharded = new ShardedBalanceExecutor(accountRepository, transactionManager,
+                new SimpleMeterRegistry(), 4, 1024, 64, 30_000);
+        List<Account> shardedAccounts = openAccounts(owner, accountCount);
+        long shardedNanos;
+        try {
+            shardedNanos = run(writers, shardedAccounts, owner, sharded);
+        } finally {
+            sharded.destroy();
+        }
+
+        log.info("{} writers over {} accounts, {} units: jpa {} units/s, sharded {} units/s",
+                writers, accountCount, units, throughput(units, jpaNanos), throughput(units, shardedNanos));
+
+        BigDecimal expected = AMOUNT.multiply(BigDecimal.valueOf(units));
+        assertThat(totalBalance(jpaAccounts)).isEqualByComparingTo(expected);
+        assertThat(totalBalance(shardedAccounts)).isEqualByComparingTo(expected);
+    }
+
+    private long run(int writers, List<Account> accounts, User owner, BalanceExecutor executor) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        AtomicInteger turn = new AtomicInteger();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(writers);
+            for (int i = 0; i < writers; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < UNITS_PER_WRITER; j++) {
+                        Account account = accounts.get(turn.getAndIncrement() % accounts.size());
+                        Operation deposit = Operation.builder()
+                                .type(OperationType.DEPOSIT)
+                                .amount(AMOUNT)
+                                .status(OperationStatus.APPROVED)
+                                .destinationAccount(account)
+                                .createdBy(owner)
+                                .build();
+                        executor.execute(List.of(deposit), () -> {
+                            deposit.setId(null);
+                            operationRepository.save(deposit);
+                        });
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            return System.nanoTime() - started;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long throughput(long units, long nanos) {
+        return units * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+
+    private User saveOwner() {
+        return userRepository.save(User.builder()
+                .email("bench-" + UUID.randomUUID() + "@test.local")
+                .password("{noop}secret")
+                .fullName("Benchmark Client")
+                .role(Role.CLIENT)
+                .active(true)
+                .build());
+    }
+
+    private List<Account> openAccounts(User owner, int count) {
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(accountRepository.save(Account.builder()
+                    .accountNumber(UUID.randomUUID().toString().substring(0, 20))
+                    .owner(owner)
+                    .balance(BigDecimal.ZERO)
+                    .status(AccountStatus.ACTIVE)
+                    .build()));
+        }
+        return accounts;
+    }
+
+    private BigDecimal totalBalance(List<Account> accounts) {
+        return accounts.stream()
+                .map(account -> accountRepository.findById(account.getId()).orElseThrow().getBalance())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
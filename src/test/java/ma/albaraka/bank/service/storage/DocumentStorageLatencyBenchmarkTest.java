@@ -0,0 +1,101 @@
+package ma.albaraka.bank.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Create and open latency with {@code benchmark.files} files (1M by default) in the sharded layout
+ * and in one flat directory, as the upload directory was before sharding. Opens are sampled at
+ * random once every file exists. Run with {@code mvn test -Pbenchmark}; needs about two million free inodes.
+ */
+@Slf4j
+@Tag("benchmark")
+class DocumentStorageLatencyBenchmarkTest {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 1_000_000);
+    private static final int OPEN_SAMPLES = Math.min(FILES, 100_000);
+    private static final byte[] CONTENT = new byte[256];
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shardedAgainstFlatDirectory() throws IOException {
+        Path shardedRoot = Files.createDirectories(dir.resolve("sharded"));
+        Path flatRoot = Files.createDirectories(dir.resolve("flat"));
+        // Legacy rows hold paths that start with the upload directory and are resolved as they are.
+        ShardedFileSystemDocumentStorage sharded = new ShardedFileSystemDocumentStorage(shardedRoot.toString());
+        ShardedFileSystemDocumentStorage flat = new ShardedFileSystemDocumentStorage(flatRoot.toString());
+
+        long[] shardedCreates = new long[FILES];
+        long[] flatCreates = new long[FILES];
+        for (int i = 0; i < FILES; i++) {
+            String key = keyOf(i);
+
+            long started = System.nanoTime();
+            sharded.write(key, new ByteArrayInputStream(CONTENT), CONTENT.length);
+            shardedCreates[i] = System.nanoTime() - started;
+
+            started = System.nanoTime();
+            writeFlat(flatRoot, key);
+            flatCreates[i] = System.nanoTime() - started;
+        }
+
+        long[] shardedOpens = new long[OPEN_SAMPLES];
+        long[] flatOpens = new long[OPEN_SAMPLES];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < OPEN_SAMPLES; i++) {
+            String key = keyOf(random.nextInt(FILES));
+            shardedOpens[i] = timeOpen(sharded, sharded.locationOf(key));
+            flatOpens[i] = timeOpen(flat, flatRoot.resolve(key).toString());
+        }
+
+        log.info("{} files, create: sharded {}, flat {}", FILES, summary(shardedCreates), summary(flatCreates));
+        log.info("{} files, open: sharded {}, flat {}", FILES, summary(shardedOpens), summary(flatOpens));
+        assertThat(sharded.exists(sharded.locationOf(keyOf(FILES - 1)))).isTrue();
+    }
+
+    private void writeFlat(Path root, String key) throws IOException {
+        Path temp = root.resolve(key + ".tmp");
+        Files.write(temp, CONTENT);
+        Files.move(temp, root.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private long timeOpen(DocumentStorage storage, String location) throws IOException {
+        long started = System.nanoTime();
+        try (InputStream in = storage.open(location).getInputStream()) {
+            in.read();
+        }
+        return System.nanoTime() - started;
+    }
+
+    private String keyOf(int index) {
+        return HexFormat.of().toHexDigits((long) index) + "-document";
+    }
+
+    private String summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %d us, p99 %d us, p99.9 %d us",
+                percentile(sorted, 0.50) / 1_000, percentile(sorted, 0.99) / 1_000, percentile(sorted, 0.999) / 1_000);
+    }
+
+    private long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+    }
+}
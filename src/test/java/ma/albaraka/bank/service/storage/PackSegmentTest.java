@@ -0,0 +1,105 @@
+package ma.albaraka.bank.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PackSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopeningTruncatesARecordCutShortByACrash() throws IOException {
+        Path path = dir.resolve("segment-000001.pack");
+        byte[] first = content(100, 1);
+        byte[] second = content(50, 2);
+        long firstOffset;
+        long secondOffset;
+        long end;
+        try (PackSegment segment = PackSegment.open(1, path)) {
+            firstOffset = segment.append(first);
+            secondOffset = segment.append(second);
+            end = segment.size();
+        }
+
+        // A header announcing 200 bytes followed by only 10 of them, as a crash mid-append leaves it.
+        ByteBuffer torn = ByteBuffer.allocate(PackSegment.HEADER_SIZE + 10);
+        torn.putInt(0x50414B31).put((byte) 1).putInt(200).put(new byte[10]).flip();
+        Files.write(path, Arrays.copyOf(torn.array(), torn.limit()), StandardOpenOption.APPEND);
+
+        try (PackSegment segment = PackSegment.open(1, path)) {
+            assertThat(segment.size()).isEqualTo(end);
+            assertThat(Files.size(path)).isEqualTo(end);
+            assertThat(segment.liveRecords()).hasSize(2);
+            assertThat(bytes(segment.slice(firstOffset, first.length))).isEqualTo(first);
+            assertThat(bytes(segment.slice(secondOffset, second.length))).isEqualTo(second);
+
+            byte[] third = content(30, 3);
+            long thirdOffset = segment.append(third);
+            assertThat(thirdOffset).isEqualTo(end);
+            assertThat(bytes(segment.slice(thirdOffset, third.length))).isEqualTo(third);
+        }
+    }
+
+    @Test
+    void readsRecordsInsideAndAcrossMappedWindows() throws IOException {
+        long window = 64;
+        try (PackSegment segment = PackSegment.open(1, dir.resolve("segment-000001.pack"), window)) {
+            byte[] inFirstWindow = content(40, 1);
+            byte[] straddling = content(30, 2);
+            byte[] inLastWindow = content(20, 3);
+            long firstOffset = segment.append(inFirstWindow);
+            long straddlingOffset = segment.append(straddling);
+            byte[] fillingSecondWindow = content(window * 2 - segment.size() - PackSegment.HEADER_SIZE, 4);
+            long fillingOffset = segment.append(fillingSecondWindow);
+            long lastOffset = segment.append(inLastWindow);
+
+            assertThat(straddlingOffset / window).isNotEqualTo((straddlingOffset + PackSegment.HEADER_SIZE
+                    + straddling.length - 1) / window);
+            assertThat(bytes(segment.slice(firstOffset, inFirstWindow.length))).isEqualTo(inFirstWindow);
+            assertThat(bytes(segment.slice(straddlingOffset, straddling.length))).isEqualTo(straddling);
+            assertThat(bytes(segment.slice(fillingOffset, fillingSecondWindow.length))).isEqualTo(fillingSecondWindow);
+            // The third window is not complete yet, so this one is read without a mapping.
+            assertThat(bytes(segment.slice(lastOffset, inLastWindow.length))).isEqualTo(inLastWindow);
+        }
+    }
+
+    @Test
+    void deletedRecordsCountAsDeadAfterReopening() throws IOException {
+        Path path = dir.resolve("segment-000001.pack");
+        try (PackSegment segment = PackSegment.open(1, path)) {
+            long offset = segment.append(content(100, 1));
+            segment.append(content(100, 2));
+            assertThat(segment.markDeleted(offset, 100)).isTrue();
+            assertThat(segment.markDeleted(offset, 100)).isFalse();
+        }
+
+        try (PackSegment segment = PackSegment.open(1, path)) {
+            assertThat(segment.deadRatio()).isEqualTo(0.5);
+            assertThat(segment.liveRecords()).hasSize(1);
+        }
+    }
+
+    private static byte[] content(long length, int seed) {
+        byte[] content = new byte[(int) length];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (seed * 31 + i);
+        }
+        return content;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,152 @@
+package ma.albaraka.bank.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import ma.albaraka.bank.domain.entity.DocumentBlob;
+import ma.albaraka.bank.repository.DocumentBlobRepository;
+import ma.albaraka.bank.repository.DocumentRepository;
+
+/**
+ * Compaction of a segment past its dead-byte threshold, and the writer lock, against a packed
+ * storage in its own upload directory. Segments hold nine 100 byte records each.
+ */
+@SpringBootTest(properties = {
+        "app.storage.type=packed",
+        "app.storage.pack.max-blob-bytes=512",
+        "app.storage.pack.segment-bytes=1000",
+        "app.storage.pack.compaction-threshold=0.5"
+})
+@ActiveProfiles("test")
+class PackedDocumentStorageTest {
+
+    private static final int RECORD_BYTES = 100;
+    private static final int RECORDS_PER_SEGMENT = 1000 / (PackSegment.HEADER_SIZE + RECORD_BYTES);
+
+    private static Path uploadDir;
+
+    @Autowired
+    private DocumentStorage storage;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) throws IOException {
+        uploadDir = Files.createTempDirectory("albaraka-packed");
+        registry.add("app.upload.dir", uploadDir::toString);
+    }
+
+    @Test
+    void compactionPointsRowsAtTheCopiesAndForwardsOldLocations() throws Exception {
+        assertThat(storage).isInstanceOf(PackedDocumentStorage.class);
+
+        // Fill one segment and start the next, so the first one is sealed.
+        List<String> locations = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i <= RECORDS_PER_SEGMENT; i++) {
+            byte[] content = content(i);
+            contents.add(content);
+            locations.add(storage.write(UUID.randomUUID().toString(), new ByteArrayInputStream(content), content.length));
+        }
+        String sealed = segmentOf(locations.get(0));
+        assertThat(segmentOf(locations.get(RECORDS_PER_SEGMENT - 1))).isEqualTo(sealed);
+        assertThat(segmentOf(locations.get(RECORDS_PER_SEGMENT))).isNotEqualTo(sealed);
+
+        int deleted = RECORDS_PER_SEGMENT / 2 + 1;
+        List<String> hashes = new ArrayList<>();
+        for (int i = deleted; i < RECORDS_PER_SEGMENT; i++) {
+            String hash = UUID.randomUUID().toString().replace("-", "");
+            hashes.add(hash);
+            documentBlobRepository.save(DocumentBlob.builder()
+                    .contentHash(hash)
+                    .storagePath(locations.get(i))
+                    .fileSize((long) RECORD_BYTES)
+                    .refCount(1)
+                    .build());
+        }
+        // The last delete takes the sealed segment past the threshold and queues its compaction.
+        for (int i = 0; i < deleted; i++) {
+            storage.delete(locations.get(i));
+        }
+
+        List<String> moved = awaitMoved(hashes, sealed);
+        for (int i = 0; i < moved.size(); i++) {
+            int index = deleted + i;
+            assertThat(segmentOf(moved.get(i))).isNotEqualTo(sealed);
+            assertThat(read(moved.get(i))).isEqualTo(contents.get(index));
+            // Requests that loaded the old location before the rows changed are still served.
+            assertThat(read(locations.get(index))).isEqualTo(contents.get(index));
+            assertThat(storage.exists(locations.get(index))).isTrue();
+        }
+        for (int i = 0; i < deleted; i++) {
+            assertThat(storage.exists(locations.get(i))).isFalse();
+        }
+    }
+
+    @Test
+    void aSecondStorageOnTheSameDirectoryFailsToStart() {
+        PackedDocumentStorage second = new PackedDocumentStorage(documentRepository, documentBlobRepository,
+                transactionManager, uploadDir.toString(), 512, 1000, 0.5, 10);
+
+        assertThatThrownBy(second::openSegments)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("in use by another process");
+    }
+
+    private List<String> awaitMoved(List<String> hashes, String sealed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<String> paths = hashes.stream()
+                    .map(hash -> documentBlobRepository.findById(hash).orElseThrow().getStoragePath())
+                    .collect(Collectors.toList());
+            if (paths.stream().noneMatch(path -> segmentOf(path).equals(sealed))) {
+                return paths;
+            }
+            assertThat(System.currentTimeMillis()).as("compaction finished").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private byte[] read(String location) throws IOException {
+        try (InputStream in = storage.open(location).getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static String segmentOf(String location) {
+        return location.split(":")[1];
+    }
+
+    private static byte[] content(int seed) {
+        byte[] content = new byte[RECORD_BYTES];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (seed * 31 + i);
+        }
+        return content;
+    }
+}